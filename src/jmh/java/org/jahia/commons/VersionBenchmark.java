@@ -0,0 +1,190 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.commons;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of the {@link Version} parsing, comparison, hashing and sorting, run with the <code>benchmark</code>
+ * profile. The corpus mixes release, beta, release candidate, update and snapshot versions as found in a Maven
+ * repository and is generated with a fixed seed, so that results of different runs are comparable.
+ * <p>
+ * The per-version benchmarks go through the corpus one version per invocation, so that larger corpora also show the
+ * cost of cache misses. Allocation rates are reported by the GC profiler, enabled by default in the profile.
+ *
+ * @author Jahia Solutions Group SA
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VersionBenchmark {
+
+    @Param({ "1000", "100000", "1000000" })
+    private int size;
+
+    private String[] versionStrings;
+
+    private String[] fileNames;
+
+    private Version[] versions;
+
+    private Version[] copies;
+
+    private List<Version> shuffled;
+
+    private int cursor;
+
+    /**
+     * Generates a realistic version string, most of them being releases.
+     */
+    static String generateVersion(Random random) {
+        StringBuilder buf = new StringBuilder(24);
+        buf.append(random.nextInt(10)).append('.').append(random.nextInt(20));
+        if (random.nextInt(3) > 0) {
+            buf.append('.').append(random.nextInt(30));
+        }
+        if (random.nextInt(10) == 0) {
+            buf.append('.').append(random.nextInt(5));
+        }
+        int kind = random.nextInt(20);
+        if (kind == 0) {
+            buf.append('b').append(1 + random.nextInt(3));
+        } else if (kind == 1) {
+            buf.append("RC").append(1 + random.nextInt(3));
+        } else if (kind == 2) {
+            buf.append("_update").append(1 + random.nextInt(5));
+        } else if (kind < 6) {
+            buf.append("-SNAPSHOT");
+        } else if (kind == 6) {
+            buf.append("-jahia").append(random.nextInt(3));
+        }
+        return buf.toString();
+    }
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(20130129L);
+        versionStrings = new String[size];
+        fileNames = new String[size];
+        versions = new Version[size];
+        copies = new Version[size];
+        for (int i = 0; i < size; i++) {
+            versionStrings[i] = generateVersion(random);
+            fileNames[i] = "module" + (char) ('a' + random.nextInt(26)) + '-' + versionStrings[i];
+            versions[i] = new Version(versionStrings[i]);
+            copies[i] = new Version(versionStrings[i]);
+        }
+        shuffled = new ArrayList<Version>(Arrays.asList(versions));
+        Collections.shuffle(shuffled, random);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetCursor() {
+        cursor = 0;
+    }
+
+    private int next() {
+        int index = cursor;
+        cursor = index + 1 < size ? index + 1 : 0;
+        return index;
+    }
+
+    @Benchmark
+    public Version parse() {
+        return new Version(versionStrings[next()]);
+    }
+
+    @Benchmark
+    public Version parseFileName() {
+        return Version.fromMavenFileName(fileNames[next()]);
+    }
+
+    @Benchmark
+    public int compareTo() {
+        int index = next();
+        return versions[index].compareTo(versions[index + 1 < size ? index + 1 : 0]);
+    }
+
+    @Benchmark
+    public boolean equals() {
+        int index = next();
+        return versions[index].equals(copies[index]);
+    }
+
+    @Benchmark
+    public int hashCodeOfVersion() {
+        return versions[next()].hashCode();
+    }
+
+    /**
+     * Sorts a copy of the shuffled corpus, so the time is for the whole corpus and includes copying it.
+     */
+    @Benchmark
+    public List<Version> sort() {
+        List<Version> list = new ArrayList<Version>(shuffled);
+        Collections.sort(list);
+        return list;
+    }
+}
\ No newline at end of file
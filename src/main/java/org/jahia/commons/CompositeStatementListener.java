@@ -0,0 +1,96 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.commons;
+
+import java.sql.SQLException;
+
+/**
+ * Statement listener notifying the default {@link LoggingStatementListener} and then a caller-provided listener, so
+ * that providing a listener, e.g. a {@link StatementStatistics}, does not disable the logging of the failures.
+ *
+ * @author Jahia Solutions Group SA
+ */
+final class CompositeStatementListener implements StatementExecutionListener {
+
+    private final StatementExecutionListener first;
+    private final StatementExecutionListener second;
+
+    private CompositeStatementListener(StatementExecutionListener first, StatementExecutionListener second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    /**
+     * Returns a listener notifying the default logging listener and then the provided one, unless the provided listener
+     * already is or includes the default one.
+     */
+    static StatementExecutionListener withDefault(StatementExecutionListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener must not be null");
+        }
+        if (listener == LoggingStatementListener.DEFAULT || listener instanceof CompositeStatementListener) {
+            return listener;
+        }
+        return new CompositeStatementListener(LoggingStatementListener.DEFAULT, listener);
+    }
+
+    @Override
+    public void beforeStatement(int index, StatementKind kind, String sql) {
+        first.beforeStatement(index, kind, sql);
+        second.beforeStatement(index, kind, sql);
+    }
+
+    @Override
+    public void afterStatement(int index, StatementKind kind, String sql, long elapsedNanos, int updateCount) {
+        first.afterStatement(index, kind, sql, elapsedNanos, updateCount);
+        second.afterStatement(index, kind, sql, elapsedNanos, updateCount);
+    }
+
+    @Override
+    public void statementFailed(int index, StatementKind kind, String sql, long elapsedNanos, SQLException error,
+            FailureHandling handling) {
+        first.statementFailed(index, kind, sql, elapsedNanos, error, handling);
+        second.statementFailed(index, kind, sql, elapsedNanos, error, handling);
+    }
+}
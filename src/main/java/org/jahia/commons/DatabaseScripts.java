@@ -43,14 +43,34 @@
  */
 package org.jahia.commons;
 
-import java.io.BufferedReader;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.sql.DataSource;
+
+import org.jahia.commons.StatementExecutionListener.FailureHandling;
 
 /**
  * Utility class for parsing and executing SQL scripts.
@@ -59,6 +79,8 @@ import java.util.List;
  */
 public final class DatabaseScripts {
 
+    private static final String PAYLOAD_SEPARATOR = ";\n";
+
     /**
      * Initializes an instance of this class.
      */
@@ -76,118 +98,260 @@ public final class DatabaseScripts {
      *             in case of reading error
      */
     public static List<String> getScriptStatements(Reader reader) throws IOException {
-        List<String> scriptsRuntimeList = new LinkedList<String>();
+        return getScriptStatements(new ScriptStatementReader(reader));
+    }
 
-        BufferedReader buffered = new BufferedReader(reader);
-        try {
-            String buffer = "";
+    /**
+     * Parses the provided UTF-8 encoded script file into a list of executable SQL statements. The file is memory-mapped
+     * and decoded in bulk, which is much faster than reading it line by line for large scripts.
+     * 
+     * @param script
+     *            the SQL script file to be parsed
+     * @return the list of SQL statements to execute
+     * @throws IOException
+     *             in case of reading error
+     */
+    public static List<String> getScriptStatements(Path script) throws IOException {
+        return getScriptStatements(ScriptStatementReader.open(script));
+    }
 
-            StringBuilder curSQLStatement = new StringBuilder();
-            while ((buffer = buffered.readLine()) != null) {
-                if (buffer != null && buffer.trim().equals("/")) {
-                    // '/' indicates the end of the PL/SQL script for Oracle -> skip it here
-                    continue;
-                }
+    /**
+     * Parses the provided UTF-8 encoded class path resource into a list of executable SQL statements. The resource is
+     * read through a large buffer and decoded in bulk.
+     * 
+     * @param classLoader
+     *            the class loader to load the resource with
+     * @param resourceName
+     *            the name of the SQL script resource, e.g. <code>db/schema.sql</code>
+     * @return the list of SQL statements to execute
+     * @throws IOException
+     *             in case of reading error or if the resource does not exist
+     */
+    public static List<String> getScriptStatements(ClassLoader classLoader, String resourceName) throws IOException {
+        return getScriptStatements(openResource(classLoader, resourceName));
+    }
 
-                // let's check for comments.
-                int commentPos = buffer.indexOf('#');
-                if ((commentPos != -1) && (!isInQuotes(buffer, commentPos))) {
-                    buffer = buffer.substring(0, commentPos);
-                }
-                commentPos = buffer.indexOf("//");
-                if ((commentPos != -1) && (!isInQuotes(buffer, commentPos))) {
-                    buffer = buffer.substring(0, commentPos);
-                }
-                commentPos = buffer.indexOf("/*");
-                if ((commentPos != -1) && (!isInQuotes(buffer, commentPos))) {
-                    buffer = buffer.substring(0, commentPos);
-                }
-                commentPos = buffer.indexOf("REM ");
-                if ((commentPos != -1) && (!isInQuotes(buffer, commentPos))) {
-                    buffer = buffer.substring(0, commentPos);
-                }
-                commentPos = buffer.indexOf("--");
-                if ((commentPos != -1) && (!isInQuotes(buffer, commentPos))) {
-                    buffer = buffer.substring(0, commentPos);
-                }
+    static List<String> getScriptStatements(ScriptStatementReader statements) throws IOException {
+        List<String> scriptsRuntimeList = new LinkedList<String>();
+        try {
+            String sqlStatement;
+            while ((sqlStatement = statements.readStatement()) != null) {
+                scriptsRuntimeList.add(sqlStatement);
+            }
+        } finally {
+            statements.close();
+        }
+        return scriptsRuntimeList;
+    }
 
-                // is the line after comment removal ?
-                if (buffer.trim().length() == 0) {
-                    continue;
-                }
+    private static ScriptStatementReader openResource(ClassLoader classLoader, String resourceName)
+            throws IOException {
+        InputStream in = classLoader.getResourceAsStream(resourceName);
+        if (in == null) {
+            throw new FileNotFoundException("Resource " + resourceName + " not found");
+        }
+        return new ScriptStatementReader(Channels.newChannel(in));
+    }
 
-                buffer = buffer.trim();
+    /**
+     * Returns a lazily populated stream of the executable SQL statements of the provided content, each statement being
+     * parsed when the stream consumer requests it, so that only the current statement is kept in memory. The reader is
+     * closed when the end of the script is reached or when the stream is closed.
+     * 
+     * @param reader
+     *            the content of the SQL script to be parsed
+     * @return the stream of SQL statements to execute; reading errors are thrown as {@link UncheckedIOException}
+     */
+    public static Stream<String> streamScriptStatements(Reader reader) {
+        final ScriptStatementReader statements = new ScriptStatementReader(reader);
+        Iterator<String> iterator = new Iterator<String>() {
+            private String next;
 
-                String bufferLowerCase = buffer.toLowerCase();
-                if (bufferLowerCase.startsWith("delimiter ")) {
-                    // we skip delimiter instruction for MySQL
-                    continue;
-                } else if (buffer.endsWith(";")) {
-                    // found separator char in the script file, finish constructing
-                    curSQLStatement.append(buffer.substring(0,
-                            bufferLowerCase.endsWith("end;") || bufferLowerCase.endsWith("end $$;")? buffer.length() : buffer.length() - 1));
-                    String sqlStatement = curSQLStatement.toString().trim();
-                    if (!"".equals(sqlStatement)) {
-                        String sqlStatementLowerCase = sqlStatement.toLowerCase();
-                        if (sqlStatementLowerCase.endsWith("end $$;")) {
-                            // the $$ is a special case for a MySQL delimiter when creating a trigger
-                            sqlStatement = sqlStatement.substring(0, sqlStatement.length() - " $$;".length()) + ";";
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = statements.readStatement();
+                        if (next == null) {
+                            statements.close();
                         }
-                        scriptsRuntimeList.add(sqlStatement);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
                     }
-                    curSQLStatement = new StringBuilder();
-                } else {
-                    curSQLStatement.append(buffer);
-                    curSQLStatement.append('\n');
                 }
-
+                return next != null;
             }
-            String sqlStatement = curSQLStatement.toString().trim();
-            if (!"".equals(sqlStatement)) {
-                scriptsRuntimeList.add(sqlStatement);
-            }
-
-        } finally {
-            buffered.close();
-        }
 
-        return scriptsRuntimeList;
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String statement = next;
+                next = null;
+                return statement;
+            }
+        };
+        return StreamSupport
+                .stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            statements.close();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                });
     }
 
-    private static boolean isInQuotes(String sqlStatement, int pos) {
-        if (pos < 0) {
-            return false;
-        }
-        String beforeStr = sqlStatement.substring(0, pos);
-        int quoteCount = 0;
-        int curPos = 0;
-        int quotePos = beforeStr.indexOf('\'');
-        while (quotePos != -1) {
-            quoteCount++;
-            curPos = quotePos + 1;
-            quotePos = beforeStr.indexOf('\'', curPos);
-        }
-        if (quoteCount % 2 == 0) {
-            return false;
-        } else {
-            return true;
-        }
+    /**
+     * Executes the content of the provided SQL script file. Each statement is executed as soon as it is parsed, so
+     * that the script is never fully loaded in memory; a reading error therefore stops the script after the statements
+     * read so far are executed.
+     * 
+     * @param scriptContent
+     *            the SQL script file content
+     * @param conn
+     *            the DB connection to execute SQL statements
+     * @throws SQLException
+     *             in case of DB errors
+     * @throws IOException
+     *             in case of a script reading errors
+     */
+    public static void executeScript(Reader scriptContent, Connection conn) throws SQLException, IOException {
+        executeScript(new ScriptStatementReader(scriptContent), conn, LoggingStatementListener.DEFAULT);
     }
 
     /**
-     * Executes the content of the provided SQL script file.
+     * Executes the content of the provided SQL script file, notifying the provided listener of the execution of each
+     * statement. Each statement is executed as soon as it is parsed. The failures are still logged by the default
+     * logging listener, whose level can be configured through the <code>java.util.logging</code> logger named after
+     * this class.
      * 
      * @param scriptContent
      *            the SQL script file content
      * @param conn
      *            the DB connection to execute SQL statements
+     * @param listener
+     *            the listener notified of the execution of each statement, e.g. a {@link StatementStatistics}, in
+     *            addition to the default logging listener
      * @throws SQLException
      *             in case of DB errors
      * @throws IOException
      *             in case of a script reading errors
      */
-    public static void executeScript(Reader scriptContent, Connection conn) throws SQLException, IOException {
-        executeStatements(getScriptStatements(scriptContent), conn);
+    public static void executeScript(Reader scriptContent, Connection conn, StatementExecutionListener listener)
+            throws SQLException, IOException {
+        executeScript(new ScriptStatementReader(scriptContent), conn, CompositeStatementListener.withDefault(listener));
+    }
+
+    /**
+     * Executes the content of the provided UTF-8 encoded SQL script file, which is memory-mapped and decoded in bulk.
+     * Each statement is executed as soon as it is parsed.
+     * 
+     * @param script
+     *            the SQL script file
+     * @param conn
+     *            the DB connection to execute SQL statements
+     * @throws SQLException
+     *             in case of DB errors
+     * @throws IOException
+     *             in case of a script reading errors
+     */
+    public static void executeScript(Path script, Connection conn) throws SQLException, IOException {
+        executeScript(ScriptStatementReader.open(script), conn, LoggingStatementListener.DEFAULT);
+    }
+
+    /**
+     * Executes the content of the provided UTF-8 encoded SQL script file, as {@link #executeScript(Path, Connection)}
+     * does, notifying the provided listener of the execution of each statement.
+     * 
+     * @param script
+     *            the SQL script file
+     * @param conn
+     *            the DB connection to execute SQL statements
+     * @param listener
+     *            the listener notified of the execution of each statement, e.g. a {@link StatementStatistics}, in
+     *            addition to the default logging listener
+     * @throws SQLException
+     *             in case of DB errors
+     * @throws IOException
+     *             in case of a script reading errors
+     */
+    public static void executeScript(Path script, Connection conn, StatementExecutionListener listener)
+            throws SQLException, IOException {
+        StatementExecutionListener executionListener = CompositeStatementListener.withDefault(listener);
+        executeScript(ScriptStatementReader.open(script), conn, executionListener);
+    }
+
+    /**
+     * Executes the content of the provided UTF-8 encoded SQL script class path resource, which is read through a large
+     * buffer and decoded in bulk. Each statement is executed as soon as it is parsed.
+     * 
+     * @param classLoader
+     *            the class loader to load the resource with
+     * @param resourceName
+     *            the name of the SQL script resource, e.g. <code>db/schema.sql</code>
+     * @param conn
+     *            the DB connection to execute SQL statements
+     * @throws SQLException
+     *             in case of DB errors
+     * @throws IOException
+     *             in case of a script reading errors or if the resource does not exist
+     */
+    public static void executeScript(ClassLoader classLoader, String resourceName, Connection conn)
+            throws SQLException, IOException {
+        executeScript(openResource(classLoader, resourceName), conn, LoggingStatementListener.DEFAULT);
+    }
+
+    /**
+     * Executes the content of the provided UTF-8 encoded SQL script class path resource, as
+     * {@link #executeScript(ClassLoader, String, Connection)} does, notifying the provided listener of the execution of
+     * each statement.
+     * 
+     * @param classLoader
+     *            the class loader to load the resource with
+     * @param resourceName
+     *            the name of the SQL script resource, e.g. <code>db/schema.sql</code>
+     * @param conn
+     *            the DB connection to execute SQL statements
+     * @param listener
+     *            the listener notified of the execution of each statement, e.g. a {@link StatementStatistics}, in
+     *            addition to the default logging listener
+     * @throws SQLException
+     *             in case of DB errors
+     * @throws IOException
+     *             in case of a script reading errors or if the resource does not exist
+     */
+    public static void executeScript(ClassLoader classLoader, String resourceName, Connection conn,
+            StatementExecutionListener listener) throws SQLException, IOException {
+        StatementExecutionListener executionListener = CompositeStatementListener.withDefault(listener);
+        executeScript(openResource(classLoader, resourceName), conn, executionListener);
+    }
+
+    private static void executeScript(ScriptStatementReader statements, Connection conn,
+            StatementExecutionListener listener) throws SQLException, IOException {
+        try {
+            String sql = statements.readStatement();
+            if (sql == null) {
+                return;
+            }
+            Statement stmt = conn.createStatement();
+            try {
+                int index = 0;
+                do {
+                    executeStatement(stmt, sql, index++, listener);
+                } while ((sql = statements.readStatement()) != null);
+            } finally {
+                if (!stmt.isClosed()) {
+                    stmt.close();
+                }
+            }
+        } finally {
+            statements.close();
+        }
     }
 
     /**
@@ -201,34 +365,692 @@ public final class DatabaseScripts {
      *             in case of DB errors
      */
     public static void executeStatements(List<String> sqlStatements, Connection conn) throws SQLException {
+        executeStatements(sqlStatements, conn, LoggingStatementListener.DEFAULT);
+    }
+
+    /**
+     * Executes the the provided SQL statements, notifying the provided listener of the execution of each statement.
+     * The failures are still logged by the default logging listener.
+     * 
+     * @param sqlStatements
+     *            the SQL statements to execute
+     * @param conn
+     *            the DB connection to execute SQL statements
+     * @param listener
+     *            the listener notified of the execution of each statement, e.g. a {@link StatementStatistics}, in
+     *            addition to the default logging listener
+     * @throws SQLException
+     *             in case of DB errors
+     */
+    public static void executeStatements(List<String> sqlStatements, Connection conn,
+            StatementExecutionListener listener) throws SQLException {
+        StatementExecutionListener executionListener = CompositeStatementListener.withDefault(listener);
+        if (sqlStatements.isEmpty()) {
+            return;
+        }
+
+        Statement stmt = conn.createStatement();
+        try {
+            int index = 0;
+            for (String sql : sqlStatements) {
+                executeStatement(stmt, sql, index++, executionListener);
+            }
+        } finally {
+            if (!stmt.isClosed()) {
+                stmt.close();
+            }
+        }
+    }
+
+    /**
+     * Executes the provided SQL statements, sending consecutive DML statements (<code>INSERT</code>,
+     * <code>UPDATE</code>, <code>DELETE</code> and <code>MERGE</code>) to the database in JDBC batches of up to
+     * <code>batchSize</code> statements, which saves one network round trip per statement. Other statements are
+     * executed one by one, in the script order.
+     * <p>
+     * The failures are handled as by {@link #executeStatements(List, Connection)}: when a batch fails, its statements
+     * that were not executed successfully are executed again one at a time, so that the failing statement is
+     * identified and the errors of DROP, ALTER TABLE and CREATE INDEX statements are ignored or logged. If the driver
+     * does not report the update counts of the failed batch, the failure is thrown as is, since the statements already
+     * executed cannot be told apart.
+     * 
+     * @param sqlStatements
+     *            the SQL statements to execute
+     * @param conn
+     *            the DB connection to execute SQL statements
+     * @param batchSize
+     *            the maximum number of DML statements per batch; <code>1</code> disables batching
+     * @throws SQLException
+     *             in case of DB errors
+     */
+    public static void executeStatements(List<String> sqlStatements, Connection conn, int batchSize)
+            throws SQLException {
+        executeStatements(sqlStatements, conn, batchSize, LoggingStatementListener.DEFAULT);
+    }
+
+    /**
+     * Executes the provided SQL statements in JDBC batches, as {@link #executeStatements(List, Connection, int)} does,
+     * notifying the provided listener of the execution of each statement. The statements executed successfully in a
+     * batch are reported once the batch is executed, each with an equal share of its execution time.
+     * 
+     * @param sqlStatements
+     *            the SQL statements to execute
+     * @param conn
+     *            the DB connection to execute SQL statements
+     * @param batchSize
+     *            the maximum number of DML statements per batch; <code>1</code> disables batching
+     * @param listener
+     *            the listener notified of the execution of each statement, e.g. a {@link StatementStatistics}, in
+     *            addition to the default logging listener
+     * @throws SQLException
+     *             in case of DB errors
+     */
+    public static void executeStatements(List<String> sqlStatements, Connection conn, int batchSize,
+            StatementExecutionListener listener) throws SQLException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        StatementExecutionListener executionListener = CompositeStatementListener.withDefault(listener);
+        if (batchSize == 1) {
+            executeStatements(sqlStatements, conn, executionListener);
+            return;
+        }
         if (sqlStatements.isEmpty()) {
             return;
         }
 
         Statement stmt = conn.createStatement();
         try {
+            List<String> batch = new ArrayList<String>(batchSize);
+            int batchStart = 0;
+            int index = 0;
             for (String sql : sqlStatements) {
-                try {
-                    stmt.execute(sql);
-                } catch (SQLException e) {
-                    final String lowerCaseSql = sql.toLowerCase();
-                    if (lowerCaseSql.startsWith("drop ") || lowerCaseSql.contains(" drop ")
-                            || lowerCaseSql.contains("\ndrop ") || lowerCaseSql.contains(" drop\n")
-                            || lowerCaseSql.contains("\ndrop\n")) {
-                        // ignore
-                    } else if (lowerCaseSql.startsWith("alter table") || lowerCaseSql.startsWith("create index")) {
-                        System.err.println("Error executing statement:\n" + sql);
-                        System.err.println(e.getMessage());
-                        e.printStackTrace();
+                if (isDml(sql)) {
+                    if (batch.isEmpty()) {
+                        batchStart = index;
+                    }
+                    batch.add(sql);
+                    stmt.addBatch(sql);
+                    if (batch.size() == batchSize) {
+                        executeBatch(stmt, batch, batchStart, stmt, executionListener);
+                    }
+                } else {
+                    if (!batch.isEmpty()) {
+                        executeBatch(stmt, batch, batchStart, stmt, executionListener);
+                    }
+                    executeStatement(stmt, sql, index, executionListener);
+                }
+                index++;
+            }
+            if (!batch.isEmpty()) {
+                executeBatch(stmt, batch, batchStart, stmt, executionListener);
+            }
+        } finally {
+            if (!stmt.isClosed()) {
+                stmt.close();
+            }
+        }
+    }
+
+    /**
+     * Executes the provided SQL statements concurrently, on up to <code>parallelism</code> connections of the data
+     * source, which mostly speeds up the creation of the tables and indexes of a schema. The statements referencing a
+     * common table or other database object are still executed in the provided order; the statements whose referenced
+     * objects cannot be determined, like triggers or procedures, are executed alone, once all the previous statements
+     * are executed.
+     * <p>
+     * The failures are handled as by {@link #executeStatements(List, Connection)}; after a failure, no further
+     * statement is started and the failure is thrown once the statements being executed are finished. Each connection
+     * is used in its current auto-commit mode and closed at the end of the execution.
+     * 
+     * @param sqlStatements
+     *            the SQL statements to execute
+     * @param dataSource
+     *            the data source to get the DB connections from
+     * @param parallelism
+     *            the maximum number of statements executed at the same time
+     * @throws SQLException
+     *             in case of DB errors
+     */
+    public static void executeStatements(List<String> sqlStatements, DataSource dataSource, int parallelism)
+            throws SQLException {
+        executeStatements(sqlStatements, dataSource, parallelism, LoggingStatementListener.DEFAULT);
+    }
+
+    /**
+     * Executes the provided SQL statements concurrently, as {@link #executeStatements(List, DataSource, int)} does,
+     * notifying the provided listener of the execution of each statement. The listener is called concurrently from
+     * the executing threads.
+     * 
+     * @param sqlStatements
+     *            the SQL statements to execute
+     * @param dataSource
+     *            the data source to get the DB connections from
+     * @param parallelism
+     *            the maximum number of statements executed at the same time
+     * @param listener
+     *            the listener notified of the execution of each statement, e.g. a {@link StatementStatistics}, in
+     *            addition to the default logging listener
+     * @throws SQLException
+     *             in case of DB errors
+     */
+    public static void executeStatements(List<String> sqlStatements, DataSource dataSource, int parallelism,
+            StatementExecutionListener listener) throws SQLException {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        new ParallelStatementExecutor(dataSource, parallelism, CompositeStatementListener.withDefault(listener))
+                .execute(sqlStatements);
+    }
+
+    /**
+     * Executes the provided SQL statements in transactions, committing every <code>commitCount</code> statements or
+     * every <code>commitInterval</code> milliseconds, whichever comes first, instead of committing each statement
+     * separately as in auto-commit mode. This mostly speeds up the scripts inserting a lot of data.
+     * <p>
+     * The DML statements (<code>INSERT</code>, <code>UPDATE</code>, <code>DELETE</code> and <code>MERGE</code>) are
+     * grouped in chunks; any other statement, as well as a statement whose failure is ignored, is executed in its own
+     * transaction, after the current chunk is committed, as most databases commit DDL statements implicitly. The
+     * failures are handled as by {@link #executeStatements(List, Connection)}; when a statement or a commit fails, only
+     * the current chunk is rolled back. The previous auto-commit mode of the connection is restored at the end of the
+     * execution, once the current chunk is committed or rolled back.
+     * 
+     * @param sqlStatements
+     *            the SQL statements to execute
+     * @param conn
+     *            the DB connection to execute SQL statements
+     * @param commitCount
+     *            the maximum number of DML statements per transaction
+     * @param commitInterval
+     *            the maximum time in milliseconds before the current transaction is committed, checked after each
+     *            statement; <code>0</code> or less to only commit every <code>commitCount</code> statements
+     * @throws SQLException
+     *             in case of DB errors
+     */
+    public static void executeStatementsInTransactions(List<String> sqlStatements, Connection conn, int commitCount,
+            long commitInterval) throws SQLException {
+        executeStatementsInTransactions(sqlStatements, conn, commitCount, commitInterval,
+                LoggingStatementListener.DEFAULT);
+    }
+
+    /**
+     * Executes the provided SQL statements in transactions, as
+     * {@link #executeStatementsInTransactions(List, Connection, int, long)} does, notifying the provided listener of
+     * the execution of each statement. A statement reported as executed may still be rolled back if a later statement
+     * of its chunk fails.
+     * 
+     * @param sqlStatements
+     *            the SQL statements to execute
+     * @param conn
+     *            the DB connection to execute SQL statements
+     * @param commitCount
+     *            the maximum number of DML statements per transaction
+     * @param commitInterval
+     *            the maximum time in milliseconds before the current transaction is committed, checked after each
+     *            statement; <code>0</code> or less to only commit every <code>commitCount</code> statements
+     * @param listener
+     *            the listener notified of the execution of each statement, e.g. a {@link StatementStatistics}, in
+     *            addition to the default logging listener
+     * @throws SQLException
+     *             in case of DB errors
+     */
+    public static void executeStatementsInTransactions(List<String> sqlStatements, Connection conn, int commitCount,
+            long commitInterval, StatementExecutionListener listener) throws SQLException {
+        if (commitCount < 1) {
+            throw new IllegalArgumentException("Commit count must be positive: " + commitCount);
+        }
+        StatementExecutionListener executionListener = CompositeStatementListener.withDefault(listener);
+        if (sqlStatements.isEmpty()) {
+            return;
+        }
+
+        boolean autoCommit = conn.getAutoCommit();
+        if (autoCommit) {
+            conn.setAutoCommit(false);
+        }
+        Exception failure = null;
+        try {
+            Statement stmt = conn.createStatement();
+            try {
+                long commitIntervalNanos = commitInterval > 0 ? commitInterval * 1000000L : Long.MAX_VALUE;
+                int chunkSize = 0;
+                long chunkStart = 0;
+                int index = 0;
+                for (String sql : sqlStatements) {
+                    if (isDml(sql) && !isDrop(sql.toLowerCase())) {
+                        if (chunkSize == 0) {
+                            chunkStart = System.nanoTime();
+                        }
+                        executeStatement(stmt, sql, index, executionListener);
+                        if (++chunkSize >= commitCount || System.nanoTime() - chunkStart >= commitIntervalNanos) {
+                            conn.commit();
+                            chunkSize = 0;
+                        }
                     } else {
-                        throw e;
+                        if (chunkSize > 0) {
+                            conn.commit();
+                            chunkSize = 0;
+                        }
+                        if (executeStatement(stmt, sql, index, executionListener)) {
+                            conn.commit();
+                        } else {
+                            // the failure is ignored, but some databases cannot go on with the failed transaction
+                            conn.rollback();
+                        }
+                    }
+                    index++;
+                }
+                if (chunkSize > 0) {
+                    conn.commit();
+                }
+            } finally {
+                if (!stmt.isClosed()) {
+                    stmt.close();
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            failure = e;
+            // roll back the current chunk before restoring the auto-commit mode, which would commit it
+            try {
+                conn.rollback();
+            } catch (SQLException rollbackFailure) {
+                e.addSuppressed(rollbackFailure);
+            }
+            throw e;
+        } finally {
+            try {
+                conn.setAutoCommit(autoCommit);
+            } catch (SQLException restoreFailure) {
+                if (failure == null) {
+                    throw restoreFailure;
+                }
+                // the statement failure is the one to report
+                failure.addSuppressed(restoreFailure);
+            }
+        }
+    }
+
+    /**
+     * Executes the provided SQL statements, running consecutive single-row <code>INSERT</code> statements of literal
+     * values into the same table and columns as one {@link PreparedStatement}, executed in JDBC batches of up to
+     * <code>batchSize</code> rows. The string and number literals become the parameters of the prepared statement, so
+     * that the database parses the insert statement once instead of once per row; the other statements are executed one
+     * by one, in the script order.
+     * <p>
+     * The failures are handled as by {@link #executeStatements(List, Connection)}: when a batch fails, its rows that
+     * were not inserted are inserted again one at a time with their original statements, so that the failing statement
+     * is identified. If they all succeed this way, the failure is attributed to the parameters, e.g. a string literal
+     * the database would have converted to a date, and the following inserts of the same shape are not prepared. If
+     * the driver does not report the update counts of the failed batch, the failure is thrown as is.
+     * 
+     * @param sqlStatements
+     *            the SQL statements to execute
+     * @param conn
+     *            the DB connection to execute SQL statements
+     * @param batchSize
+     *            the maximum number of rows per batch
+     * @throws SQLException
+     *             in case of DB errors
+     */
+    public static void executeStatementsWithPreparedInserts(List<String> sqlStatements, Connection conn,
+            int batchSize) throws SQLException {
+        executeStatementsWithPreparedInserts(sqlStatements, conn, batchSize, LoggingStatementListener.DEFAULT);
+    }
+
+    /**
+     * Executes the provided SQL statements with prepared inserts, as
+     * {@link #executeStatementsWithPreparedInserts(List, Connection, int)} does, notifying the provided listener of the
+     * execution of each statement. The rows inserted successfully in a batch are reported with their original
+     * statements once the batch is executed, each with an equal share of its execution time.
+     * 
+     * @param sqlStatements
+     *            the SQL statements to execute
+     * @param conn
+     *            the DB connection to execute SQL statements
+     * @param batchSize
+     *            the maximum number of rows per batch
+     * @param listener
+     *            the listener notified of the execution of each statement, e.g. a {@link StatementStatistics}, in
+     *            addition to the default logging listener
+     * @throws SQLException
+     *             in case of DB errors
+     */
+    public static void executeStatementsWithPreparedInserts(List<String> sqlStatements, Connection conn,
+            int batchSize, StatementExecutionListener listener) throws SQLException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        StatementExecutionListener executionListener = CompositeStatementListener.withDefault(listener);
+        if (sqlStatements.isEmpty()) {
+            return;
+        }
+
+        Set<String> unpreparedTemplates = new HashSet<String>();
+        List<String> batch = new ArrayList<String>(batchSize);
+        int batchStart = 0;
+        String template = null;
+        PreparedStatement prepared = null;
+        Statement stmt = conn.createStatement();
+        try {
+            for (int index = 0; index < sqlStatements.size(); index++) {
+                String sql = sqlStatements.get(index);
+                InsertStatement insert = startsWithKeyword(sql, "insert") ? InsertStatement.parse(sql) : null;
+                if (insert != null && unpreparedTemplates.contains(insert.getTemplate())) {
+                    insert = null;
+                }
+                if (prepared != null && (insert == null || !insert.getTemplate().equals(template))) {
+                    if (!batch.isEmpty() && !executeBatch(prepared, batch, batchStart, stmt, executionListener)) {
+                        unpreparedTemplates.add(template);
                     }
+                    prepared.close();
+                    prepared = null;
+                }
+                if (insert != null && prepared == null) {
+                    template = insert.getTemplate();
+                    try {
+                        prepared = conn.prepareStatement(template);
+                    } catch (SQLException e) {
+                        unpreparedTemplates.add(template);
+                        insert = null;
+                    }
+                }
+                if (insert == null) {
+                    executeStatement(stmt, sql, index, executionListener);
+                    continue;
+                }
+                insert.setParameters(prepared);
+                prepared.addBatch();
+                if (batch.isEmpty()) {
+                    batchStart = index;
+                }
+                batch.add(sql);
+                if (batch.size() == batchSize
+                        && !executeBatch(prepared, batch, batchStart, stmt, executionListener)) {
+                    unpreparedTemplates.add(template);
+                    prepared.close();
+                    prepared = null;
+                }
+            }
+            if (prepared != null && !batch.isEmpty()) {
+                executeBatch(prepared, batch, batchStart, stmt, executionListener);
+            }
+        } finally {
+            if (prepared != null && !prepared.isClosed()) {
+                prepared.close();
+            }
+            if (!stmt.isClosed()) {
+                stmt.close();
+            }
+        }
+    }
+
+    /**
+     * Executes the provided SQL statements, sending consecutive DDL and other non-DML statements to the database as
+     * multi-statement payloads of up to <code>maxPayloadSize</code> characters, which saves one network round trip per
+     * statement. The driver must accept several statements separated by semicolons in one
+     * {@link Statement#execute(String)} call, e.g. MySQL with <code>allowMultiQueries=true</code>, PostgreSQL or SQL
+     * Server. The DML statements, the DROP statements, which often fail on purpose, and the statements containing a
+     * semicolon, like PL/SQL blocks or triggers, are executed one by one.
+     * <p>
+     * The results of a payload are walked with {@link Statement#getMoreResults()}, so that a failure is attributed to
+     * the statement whose result could not be read. That statement and the following ones of the payload are then
+     * executed again one at a time, so that the failures are ignored or logged as by
+     * {@link #executeStatements(List, Connection)}. With <code>atomicPayloads</code>, the statements of the payload
+     * preceding the failing one are considered rolled back, as PostgreSQL does in auto-commit mode, and are executed
+     * again too; otherwise they are considered executed, as with MySQL or SQL Server with <code>XACT_ABORT</code> on. A
+     * driver reporting the failure before the results of the preceding statements can only be used with
+     * <code>atomicPayloads</code>.
+     * 
+     * @param sqlStatements
+     *            the SQL statements to execute
+     * @param conn
+     *            the DB connection to execute SQL statements
+     * @param maxPayloadSize
+     *            the maximum number of characters sent in one round trip; a single statement larger than that is sent
+     *            alone
+     * @param atomicPayloads
+     *            whether the database rolls back a whole payload when one of its statements fails
+     * @throws SQLException
+     *             in case of DB errors
+     */
+    public static void executeStatementsInPayloads(List<String> sqlStatements, Connection conn, int maxPayloadSize,
+            boolean atomicPayloads) throws SQLException {
+        executeStatementsInPayloads(sqlStatements, conn, maxPayloadSize, atomicPayloads,
+                LoggingStatementListener.DEFAULT);
+    }
+
+    /**
+     * Executes the provided SQL statements in multi-statement payloads, as
+     * {@link #executeStatementsInPayloads(List, Connection, int, boolean)} does, notifying the provided listener of the
+     * execution of each statement. The statements executed successfully in a payload are reported once the payload is
+     * executed, each with an equal share of its execution time.
+     * 
+     * @param sqlStatements
+     *            the SQL statements to execute
+     * @param conn
+     *            the DB connection to execute SQL statements
+     * @param maxPayloadSize
+     *            the maximum number of characters sent in one round trip; a single statement larger than that is sent
+     *            alone
+     * @param atomicPayloads
+     *            whether the database rolls back a whole payload when one of its statements fails
+     * @param listener
+     *            the listener notified of the execution of each statement, e.g. a {@link StatementStatistics}, in
+     *            addition to the default logging listener
+     * @throws SQLException
+     *             in case of DB errors
+     */
+    public static void executeStatementsInPayloads(List<String> sqlStatements, Connection conn, int maxPayloadSize,
+            boolean atomicPayloads, StatementExecutionListener listener) throws SQLException {
+        if (maxPayloadSize < 1) {
+            throw new IllegalArgumentException("Payload size must be positive: " + maxPayloadSize);
+        }
+        StatementExecutionListener executionListener = CompositeStatementListener.withDefault(listener);
+        if (sqlStatements.isEmpty()) {
+            return;
+        }
+
+        Statement stmt = conn.createStatement();
+        try {
+            List<String> payload = new ArrayList<String>();
+            int payloadStart = 0;
+            int payloadSize = 0;
+            for (int index = 0; index < sqlStatements.size(); index++) {
+                String sql = sqlStatements.get(index);
+                if (isDml(sql) || isDrop(sql.toLowerCase()) || sql.indexOf(';') != -1) {
+                    executePayload(stmt, payload, payloadStart, atomicPayloads, executionListener);
+                    payloadSize = 0;
+                    executeStatement(stmt, sql, index, executionListener);
+                    continue;
+                }
+                if (!payload.isEmpty() && payloadSize + PAYLOAD_SEPARATOR.length() + sql.length() > maxPayloadSize) {
+                    executePayload(stmt, payload, payloadStart, atomicPayloads, executionListener);
+                    payloadSize = 0;
+                }
+                if (payload.isEmpty()) {
+                    payloadStart = index;
                 }
+                payloadSize += payload.isEmpty() ? sql.length() : PAYLOAD_SEPARATOR.length() + sql.length();
+                payload.add(sql);
             }
+            executePayload(stmt, payload, payloadStart, atomicPayloads, executionListener);
         } finally {
             if (!stmt.isClosed()) {
                 stmt.close();
             }
         }
     }
-}
+
+    /**
+     * Executes the statements in one round trip, finding the failing statement from the results read so far if it
+     * fails. The payload, whose first statement has the provided index, is cleared.
+     */
+    private static void executePayload(Statement stmt, List<String> payload, int firstIndex, boolean atomic,
+            StatementExecutionListener listener) throws SQLException {
+        if (payload.size() <= 1) {
+            if (!payload.isEmpty()) {
+                executeStatement(stmt, payload.get(0), firstIndex, listener);
+                payload.clear();
+            }
+            return;
+        }
+        List<String> statements = new ArrayList<String>(payload);
+        payload.clear();
+        int[] updateCounts = new int[statements.size()];
+        Arrays.fill(updateCounts, -1);
+        int executed = 0;
+        long start = System.nanoTime();
+        try {
+            stmt.execute(String.join(PAYLOAD_SEPARATOR, statements));
+            updateCounts[executed++] = stmt.getUpdateCount();
+            while (executed < statements.size()) {
+                boolean resultSet = stmt.getMoreResults();
+                int updateCount = stmt.getUpdateCount();
+                if (!resultSet && updateCount == -1) {
+                    break;
+                }
+                updateCounts[executed++] = updateCount;
+            }
+            reportExecuted(statements, firstIndex, statements.size(), updateCounts, System.nanoTime() - start,
+                    listener);
+            return;
+        } catch (SQLException e) {
+            if (executed == statements.size()) {
+                throw e;
+            }
+        }
+        if (!atomic) {
+            reportExecuted(statements, firstIndex, executed, updateCounts, System.nanoTime() - start, listener);
+        }
+        // execute the failing and the following statements one at a time, as well as the preceding ones if the whole
+        // payload was rolled back, so that several failures cost at most one round trip per statement
+        for (int i = atomic ? 0 : executed; i < statements.size(); i++) {
+            executeStatement(stmt, statements.get(i), firstIndex + i, listener);
+        }
+    }
+
+    /**
+     * Executes the batch of the first statement, falling back to executing the provided SQL statements of the batch
+     * one at a time with the second statement if it fails. The statements of the batch, the first one having the
+     * provided index, are cleared.
+     * 
+     * @return false if the batch failed and its statements were executed one at a time
+     */
+    private static boolean executeBatch(Statement batchStmt, List<String> batch, int firstIndex, Statement stmt,
+            StatementExecutionListener listener) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            int[] updateCounts = batchStmt.executeBatch();
+            reportExecuted(batch, firstIndex, batch.size(), updateCounts, System.nanoTime() - start, listener);
+            return true;
+        } catch (SQLException e) {
+            long elapsedNanos = System.nanoTime() - start;
+            batchStmt.clearBatch();
+            int[] updateCounts = e instanceof BatchUpdateException ? ((BatchUpdateException) e).getUpdateCounts()
+                    : null;
+            if (updateCounts == null) {
+                // the driver does not tell which statements were executed: executing them again may apply them twice
+                for (int i = 0; i < batch.size(); i++) {
+                    String sql = batch.get(i);
+                    StatementKind kind = StatementKind.of(sql);
+                    listener.beforeStatement(firstIndex + i, kind, sql);
+                    listener.statementFailed(firstIndex + i, kind, sql, elapsedNanos / batch.size(), e,
+                            FailureHandling.THROWN);
+                }
+                throw e;
+            }
+            if (updateCounts.length == batch.size()) {
+                // the driver went on after the failure: only execute again the failed statements
+                for (int i = 0; i < updateCounts.length; i++) {
+                    if (updateCounts[i] == Statement.EXECUTE_FAILED) {
+                        executeStatement(stmt, batch.get(i), firstIndex + i, listener);
+                    } else {
+                        reportExecuted(batch.subList(i, i + 1), firstIndex + i, 1, new int[] { updateCounts[i] },
+                                elapsedNanos / batch.size(), listener);
+                    }
+                }
+            } else {
+                // the driver stopped at the first failure: the statements before it were executed successfully
+                reportExecuted(batch, firstIndex, updateCounts.length, updateCounts,
+                        elapsedNanos * updateCounts.length / batch.size(), listener);
+                for (int i = updateCounts.length; i < batch.size(); i++) {
+                    executeStatement(stmt, batch.get(i), firstIndex + i, listener);
+                }
+            }
+            return false;
+        } finally {
+            batch.clear();
+        }
+    }
+
+    /**
+     * Reports the first <code>count</code> statements, executed together in a batch or payload, to the listener, each
+     * with an equal share of the elapsed time.
+     */
+    private static void reportExecuted(List<String> statements, int firstIndex, int count, int[] updateCounts,
+            long elapsedNanos, StatementExecutionListener listener) {
+        for (int i = 0; i < count; i++) {
+            String sql = statements.get(i);
+            StatementKind kind = StatementKind.of(sql);
+            listener.beforeStatement(firstIndex + i, kind, sql);
+            listener.afterStatement(firstIndex + i, kind, sql, elapsedNanos / count,
+                    i < updateCounts.length && updateCounts[i] >= 0 ? updateCounts[i] : -1);
+        }
+    }
+
+    /**
+     * Checks if the statement is a DML statement which can be executed in a batch.
+     */
+    private static boolean isDml(String sql) {
+        return startsWithKeyword(sql, "insert") || startsWithKeyword(sql, "update") || startsWithKeyword(sql, "delete")
+                || startsWithKeyword(sql, "merge");
+    }
+
+    private static boolean startsWithKeyword(String sql, String keyword) {
+        int length = keyword.length();
+        return sql.regionMatches(true, 0, keyword, 0, length)
+                && (sql.length() == length || Character.isWhitespace(sql.charAt(length)));
+    }
+
+    /**
+     * Executes a single statement, ignoring the failures of DROP statements and only reporting the ones of ALTER TABLE
+     * and CREATE INDEX statements to the listener.
+     * 
+     * @return false if the statement failed and the failure was ignored
+     */
+    static boolean executeStatement(Statement stmt, String sql, int index, StatementExecutionListener listener)
+            throws SQLException {
+        StatementKind kind = StatementKind.of(sql);
+        listener.beforeStatement(index, kind, sql);
+        long start = System.nanoTime();
+        try {
+            stmt.execute(sql);
+            listener.afterStatement(index, kind, sql, System.nanoTime() - start, stmt.getUpdateCount());
+            return true;
+        } catch (SQLException e) {
+            long elapsedNanos = System.nanoTime() - start;
+            final String lowerCaseSql = sql.toLowerCase();
+            FailureHandling handling;
+            if (isDrop(lowerCaseSql)) {
+                handling = FailureHandling.IGNORED;
+            } else if (lowerCaseSql.startsWith("alter table") || lowerCaseSql.startsWith("create index")) {
+                handling = FailureHandling.LOGGED;
+            } else {
+                handling = FailureHandling.THROWN;
+            }
+            listener.statementFailed(index, kind, sql, elapsedNanos, e, handling);
+            if (handling == FailureHandling.THROWN) {
+                throw e;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Returns true if the failure of the statement is ignored, as for DROP statements.
+     */
+    static boolean isDrop(String lowerCaseSql) {
+        return lowerCaseSql.startsWith("drop ") || lowerCaseSql.contains(" drop ") || lowerCaseSql.contains("\ndrop ")
+                || lowerCaseSql.contains(" drop\n") || lowerCaseSql.contains("\ndrop\n");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,348 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.commons;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/**
+ * Execution plan of the SQL scripts needed to upgrade a database schema from a version to another one.
+ * <p>
+ * The scripts are <code>.sql</code> files whose name ends with the version they upgrade to, e.g.
+ * <code>jahia-schema-7.2.0.0.sql</code>, the version being extracted as matched by
+ * {@link Version#FILE_NAME_VERSION_PATTERN}. The plan contains the scripts whose version is greater than the current
+ * version and lower than or equal to the target one, in ascending version order. All scripts start being parsed in
+ * parallel when the plan is created, so that reading and parsing overlap with the execution of the previous scripts;
+ * the statements of each script are released once it is executed, so that the executed scripts are not kept in memory.
+ *
+ * @author Jahia Solutions Group SA
+ */
+public final class DatabaseUpgradePlan {
+
+    private static final String SCRIPT_EXTENSION = ".sql";
+
+    private static final Comparator<Script> SCRIPT_ORDER = new Comparator<Script>() {
+        @Override
+        public int compare(Script left, Script right) {
+            int result = left.version.compareTo(right.version);
+            return result != 0 ? result : left.name.compareTo(right.name);
+        }
+    };
+
+    /**
+     * An upgrade script of the plan.
+     */
+    public static final class Script {
+
+        private final String name;
+        private final Version version;
+        private final ScriptSource source;
+        private volatile CompletableFuture<List<String>> statements;
+
+        Script(String name, Version version, ScriptSource source) {
+            this.name = name;
+            this.version = version;
+            this.source = source;
+        }
+
+        /**
+         * Returns the file name of the script.
+         *
+         * @return the script file name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the version the script upgrades to.
+         *
+         * @return the script version
+         */
+        public Version getVersion() {
+            return version;
+        }
+
+        /**
+         * Returns the statements of the script, waiting for the script to be parsed if needed. Once the script is
+         * executed by the plan, its statements are released and parsed again if requested.
+         *
+         * @return the list of SQL statements to execute
+         * @throws IOException in case of a script reading error
+         */
+        public List<String> getStatements() throws IOException {
+            CompletableFuture<List<String>> parsed = statements;
+            if (parsed == null) {
+                return source.readStatements();
+            }
+            try {
+                return parsed.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof UncheckedIOException) {
+                    throw ((UncheckedIOException) e.getCause()).getCause();
+                }
+                throw e;
+            }
+        }
+
+        private void parse(Executor executor) {
+            statements = CompletableFuture.supplyAsync(new Supplier<List<String>>() {
+                @Override
+                public List<String> get() {
+                    try {
+                        return source.readStatements();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }, executor);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * Reads the statements of a script.
+     */
+    private interface ScriptSource {
+
+        List<String> readStatements() throws IOException;
+    }
+
+    private final Version currentVersion;
+    private final Version targetVersion;
+    private final List<Script> scripts;
+
+    /**
+     * Plans the upgrade using the scripts of the provided directory, parsed on the common fork-join pool.
+     *
+     * @param directory      the directory containing the upgrade scripts
+     * @param currentVersion the current version of the schema
+     * @param targetVersion  the version to upgrade to
+     * @return the upgrade plan
+     * @throws IOException in case of a directory reading error
+     */
+    public static DatabaseUpgradePlan create(Path directory, Version currentVersion, Version targetVersion)
+            throws IOException {
+        return create(directory, currentVersion, targetVersion, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Plans the upgrade using the scripts of the provided directory, parsed by the provided executor.
+     *
+     * @param directory      the directory containing the upgrade scripts
+     * @param currentVersion the current version of the schema
+     * @param targetVersion  the version to upgrade to
+     * @param executor       the executor parsing the scripts
+     * @return the upgrade plan
+     * @throws IOException in case of a directory reading error
+     */
+    public static DatabaseUpgradePlan create(Path directory, Version currentVersion, Version targetVersion,
+            Executor executor) throws IOException {
+        List<Script> scripts = new ArrayList<Script>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SCRIPT_EXTENSION)) {
+            for (final Path path : stream) {
+                Script script = createScript(path.getFileName().toString(), currentVersion, targetVersion,
+                        new ScriptSource() {
+                            @Override
+                            public List<String> readStatements() throws IOException {
+                                return DatabaseScripts.getScriptStatements(path);
+                            }
+                        });
+                if (script != null && Files.isRegularFile(path)) {
+                    scripts.add(script);
+                }
+            }
+        }
+        return new DatabaseUpgradePlan(currentVersion, targetVersion, scripts, executor);
+    }
+
+    /**
+     * Plans the upgrade using the provided class path resources, parsed on the common fork-join pool. As the content of
+     * a class path folder cannot be listed, the candidate resources are provided by the caller.
+     *
+     * @param classLoader    the class loader to load the resources with
+     * @param resourceNames  the names of the candidate upgrade scripts, e.g. <code>db/upgrade/schema-7.2.0.0.sql</code>
+     * @param currentVersion the current version of the schema
+     * @param targetVersion  the version to upgrade to
+     * @return the upgrade plan
+     */
+    public static DatabaseUpgradePlan create(ClassLoader classLoader, Collection<String> resourceNames,
+            Version currentVersion, Version targetVersion) {
+        return create(classLoader, resourceNames, currentVersion, targetVersion, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Plans the upgrade using the provided class path resources, parsed by the provided executor.
+     *
+     * @param classLoader    the class loader to load the resources with
+     * @param resourceNames  the names of the candidate upgrade scripts, e.g. <code>db/upgrade/schema-7.2.0.0.sql</code>
+     * @param currentVersion the current version of the schema
+     * @param targetVersion  the version to upgrade to
+     * @param executor       the executor parsing the scripts
+     * @return the upgrade plan
+     */
+    public static DatabaseUpgradePlan create(final ClassLoader classLoader, Collection<String> resourceNames,
+            Version currentVersion, Version targetVersion, Executor executor) {
+        List<Script> scripts = new ArrayList<Script>();
+        for (final String resourceName : resourceNames) {
+            Script script = createScript(resourceName.substring(resourceName.lastIndexOf('/') + 1), currentVersion,
+                    targetVersion, new ScriptSource() {
+                        @Override
+                        public List<String> readStatements() throws IOException {
+                            return DatabaseScripts.getScriptStatements(classLoader, resourceName);
+                        }
+                    });
+            if (script != null) {
+                scripts.add(script);
+            }
+        }
+        return new DatabaseUpgradePlan(currentVersion, targetVersion, scripts, executor);
+    }
+
+    /**
+     * Returns the script if its file name contains a version within the upgrade range, null otherwise.
+     */
+    private static Script createScript(String fileName, Version currentVersion, Version targetVersion,
+            ScriptSource source) {
+        if (!fileName.endsWith(SCRIPT_EXTENSION)) {
+            return null;
+        }
+        Version version;
+        try {
+            version = Version.fromMavenFileName(fileName.substring(0, fileName.length() - SCRIPT_EXTENSION.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (version == null || version.compareTo(currentVersion) <= 0 || version.compareTo(targetVersion) > 0) {
+            return null;
+        }
+        return new Script(fileName, version, source);
+    }
+
+    private DatabaseUpgradePlan(Version currentVersion, Version targetVersion, List<Script> scripts,
+            Executor executor) {
+        this.currentVersion = currentVersion;
+        this.targetVersion = targetVersion;
+        Collections.sort(scripts, SCRIPT_ORDER);
+        for (Script script : scripts) {
+            script.parse(executor);
+        }
+        this.scripts = Collections.unmodifiableList(scripts);
+    }
+
+    public Version getCurrentVersion() {
+        return currentVersion;
+    }
+
+    public Version getTargetVersion() {
+        return targetVersion;
+    }
+
+    /**
+     * Returns the scripts to execute, in execution order.
+     *
+     * @return a read-only list of the upgrade scripts
+     */
+    public List<Script> getScripts() {
+        return scripts;
+    }
+
+    public boolean isEmpty() {
+        return scripts.isEmpty();
+    }
+
+    /**
+     * Executes the scripts of the plan one after another, each one as soon as it is parsed.
+     *
+     * @param conn the DB connection to execute SQL statements
+     * @throws SQLException in case of DB errors
+     * @throws IOException  in case of a script reading error
+     */
+    public void execute(Connection conn) throws SQLException, IOException {
+        execute(conn, LoggingStatementListener.DEFAULT);
+    }
+
+    /**
+     * Executes the scripts of the plan one after another, each one as soon as it is parsed, notifying the provided
+     * listener of the execution of each statement, e.g. to find the statements making the upgrade slow. The statement
+     * indexes reported to the listener start from 0 for each script.
+     *
+     * @param conn     the DB connection to execute SQL statements
+     * @param listener the listener notified of the execution of each statement, e.g. a {@link StatementStatistics}, in
+     *                 addition to the default logging listener
+     * @throws SQLException in case of DB errors
+     * @throws IOException  in case of a script reading error
+     */
+    public void execute(Connection conn, StatementExecutionListener listener) throws SQLException, IOException {
+        for (Script script : scripts) {
+            DatabaseScripts.executeStatements(script.getStatements(), conn, listener);
+            // the statements of the executed scripts are not needed anymore
+            script.statements = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return currentVersion + " -> " + targetVersion + ": " + scripts;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,242 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.commons;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A single-row <code>INSERT INTO table [(columns)] VALUES (...)</code> statement whose values are all literals, split
+ * into its parts so that consecutive inserts of the same shape can be grouped.
+ * <p>
+ * The string and number literals are extracted as parameters of the statement {@link #getTemplate() template}, in which
+ * they are replaced by <code>?</code>; <code>NULL</code> literals are kept in the template, so that no SQL type has to
+ * be guessed for them. Statements containing any other value, like a function call or an expression, or a string
+ * literal with a backslash, whose meaning depends on the database, are not parsed.
+ *
+ * @author Jahia Solutions Group SA
+ */
+final class InsertStatement {
+
+    private static final Pattern INSERT = Pattern.compile(
+            "insert\\s+into\\s+([\\w$#.\"`\\[\\]]+)\\s*(\\([^()']*\\))?\\s*values\\s*\\(",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern NUMBER = Pattern.compile("[-+]?(?:\\d+(?:\\.\\d*)?|\\.\\d+)(?:[eE][-+]?\\d+)?");
+
+    private final String sql;
+    private final String table;
+    private final String columns;
+    private final String values;
+    private final String template;
+    private final List<Object> parameters;
+
+    private InsertStatement(String sql, String table, String columns, String values, String template,
+            List<Object> parameters) {
+        this.sql = sql;
+        this.table = table;
+        this.columns = columns;
+        this.values = values;
+        this.template = template;
+        this.parameters = parameters;
+    }
+
+    /**
+     * Parses the provided statement.
+     *
+     * @param sql the SQL statement
+     * @return the parsed insert statement or null if the statement is not a single-row insert of literal values
+     */
+    static InsertStatement parse(String sql) {
+        Matcher matcher = INSERT.matcher(sql);
+        if (!matcher.lookingAt()) {
+            return null;
+        }
+        int valuesStart = matcher.end() - 1;
+        StringBuilder template = new StringBuilder(sql.length());
+        template.append("insert into ").append(matcher.group(1));
+        String columns = matcher.group(2);
+        if (columns != null) {
+            columns = columns.replaceAll("\\s+", " ");
+            template.append(' ').append(columns);
+        }
+        template.append(" values (");
+
+        List<Object> parameters = new ArrayList<Object>();
+        int length = sql.length();
+        int i = valuesStart + 1;
+        while (true) {
+            while (i < length && Character.isWhitespace(sql.charAt(i))) {
+                i++;
+            }
+            if (i == length) {
+                return null;
+            }
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                StringBuilder value = new StringBuilder();
+                i++;
+                while (true) {
+                    if (i == length) {
+                        return null;
+                    }
+                    c = sql.charAt(i++);
+                    if (c == '\\') {
+                        return null;
+                    } else if (c == '\'') {
+                        if (i < length && sql.charAt(i) == '\'') {
+                            value.append('\'');
+                            i++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        value.append(c);
+                    }
+                }
+                parameters.add(value.toString());
+                template.append('?');
+            } else {
+                int end = i;
+                while (end < length && sql.charAt(end) != ',' && sql.charAt(end) != ')') {
+                    end++;
+                }
+                String literal = sql.substring(i, end).trim();
+                if (literal.equalsIgnoreCase("null")) {
+                    template.append("NULL");
+                } else if (NUMBER.matcher(literal).matches()) {
+                    parameters.add(new BigDecimal(literal));
+                    template.append('?');
+                } else {
+                    return null;
+                }
+                i = end;
+            }
+            while (i < length && Character.isWhitespace(sql.charAt(i))) {
+                i++;
+            }
+            if (i == length) {
+                return null;
+            }
+            c = sql.charAt(i++);
+            if (c == ')') {
+                break;
+            } else if (c != ',') {
+                return null;
+            }
+            template.append(", ");
+        }
+        if (!sql.substring(i).trim().isEmpty()) {
+            return null;
+        }
+        template.append(')');
+        return new InsertStatement(sql, matcher.group(1), columns, sql.substring(valuesStart, i), template.toString(),
+                Collections.unmodifiableList(parameters));
+    }
+
+    /**
+     * Returns the original SQL statement.
+     */
+    String getSql() {
+        return sql;
+    }
+
+    /**
+     * Returns the name of the table, as written in the statement.
+     */
+    String getTable() {
+        return table;
+    }
+
+    /**
+     * Returns the parenthesized column list, with normalized white spaces, or null if the statement has none.
+     */
+    String getColumns() {
+        return columns;
+    }
+
+    /**
+     * Returns the parenthesized row of values, as written in the statement.
+     */
+    String getValues() {
+        return values;
+    }
+
+    /**
+     * Returns the statement with its string and number literals replaced by parameter markers. Statements with the
+     * same template only differ by their parameters.
+     */
+    String getTemplate() {
+        return template;
+    }
+
+    List<Object> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Sets the parameters of the statement on the provided statement prepared from its template.
+     */
+    void setParameters(PreparedStatement stmt) throws SQLException {
+        for (int i = 0; i < parameters.size(); i++) {
+            Object value = parameters.get(i);
+            if (value instanceof BigDecimal) {
+                stmt.setBigDecimal(i + 1, (BigDecimal) value);
+            } else {
+                stmt.setString(i + 1, (String) value);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return sql;
+    }
+}
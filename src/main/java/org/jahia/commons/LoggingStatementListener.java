@@ -0,0 +1,95 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.commons;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Statement listener writing to a <code>java.util.logging</code> logger, notified by {@link DatabaseScripts} along with
+ * any listener provided by the caller. The failures that do not stop the script execution, like the ones of ALTER
+ * TABLE and CREATE INDEX statements, are logged as warnings; the execution time of each statement and the ignored
+ * failures are logged at the {@link Level#FINE} level.
+ *
+ * @author Jahia Solutions Group SA
+ */
+public final class LoggingStatementListener implements StatementExecutionListener {
+
+    static final LoggingStatementListener DEFAULT = new LoggingStatementListener(
+            Logger.getLogger(DatabaseScripts.class.getName()));
+
+    private final Logger logger;
+
+    /**
+     * Initializes a listener writing to the provided logger.
+     *
+     * @param logger the logger to write to
+     */
+    public LoggingStatementListener(Logger logger) {
+        this.logger = logger;
+    }
+
+    @Override
+    public void afterStatement(int index, StatementKind kind, String sql, long elapsedNanos, int updateCount) {
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine("Executed statement" + (index >= 0 ? " #" + index : "") + " in "
+                    + TimeUnit.NANOSECONDS.toMillis(elapsedNanos) + " ms"
+                    + (updateCount >= 0 ? " (" + updateCount + " rows)" : "") + ":\n" + sql);
+        }
+    }
+
+    @Override
+    public void statementFailed(int index, StatementKind kind, String sql, long elapsedNanos, SQLException error,
+            FailureHandling handling) {
+        if (handling == FailureHandling.LOGGED) {
+            logger.log(Level.WARNING, "Error executing statement" + (index >= 0 ? " #" + index : "") + ":\n" + sql,
+                    error);
+        } else if (logger.isLoggable(Level.FINE)) {
+            logger.log(Level.FINE, (handling == FailureHandling.IGNORED ? "Ignored error" : "Error")
+                    + " executing statement" + (index >= 0 ? " #" + index : "") + ":\n" + sql, error);
+        }
+    }
+}
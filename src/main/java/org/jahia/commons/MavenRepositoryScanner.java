@@ -0,0 +1,401 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.commons;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.regex.Matcher;
+
+/**
+ * Scanner of a local Maven repository, collecting the versions available for each artifact. The repository tree is
+ * walked using {@link DirectoryStream}s, one fork-join task per directory.
+ * <p>
+ * A directory <code>&lt;group path&gt;/&lt;artifactId&gt;/&lt;version&gt;</code> is considered as an artifact version
+ * if it contains a file named <code>&lt;artifactId&gt;-&lt;version&gt;.&lt;extension&gt;</code> or, for a
+ * <code>-SNAPSHOT</code> version, a timestamped snapshot file matching {@link Version#MAVEN_VERSION_FILE_PATTERN}.
+ * Files with classifiers, checksums and metadata are ignored, and symbolic links to directories are not followed.
+ * <p>
+ * The scanner keeps the state of the last scan: {@link #rescan()} only lists the directories whose modification time
+ * has changed, reusing the previous results for the other ones. Note that the modification time of a directory only
+ * changes when entries are added, removed or renamed in it, so every directory still needs to be checked, but
+ * unchanged ones are neither listed nor parsed again.
+ *
+ * @author Jahia Solutions Group SA
+ */
+public class MavenRepositoryScanner {
+
+    private static final String SNAPSHOT_SUFFIX = "-" + Version.MAVEN_SNAPSHOT_VERSION;
+
+    /**
+     * The versions found for an artifact.
+     */
+    public static final class ArtifactVersions {
+
+        private final String groupId;
+        private final String artifactId;
+        private final VersionIndex versions;
+        private final Version latestRelease;
+        private final Version latestSnapshot;
+
+        ArtifactVersions(String groupId, String artifactId, VersionIndex versions, Version latestRelease,
+                Version latestSnapshot) {
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.versions = versions;
+            this.latestRelease = latestRelease;
+            this.latestSnapshot = latestSnapshot;
+        }
+
+        public String getGroupId() {
+            return groupId;
+        }
+
+        public String getArtifactId() {
+            return artifactId;
+        }
+
+        /**
+         * Returns all the versions found for the artifact, including the snapshots.
+         *
+         * @return the index of the artifact versions
+         */
+        public VersionIndex getVersions() {
+            return versions;
+        }
+
+        /**
+         * Returns the highest version which is not a snapshot.
+         *
+         * @return the latest release or null if there is none
+         */
+        public Version getLatestRelease() {
+            return latestRelease;
+        }
+
+        /**
+         * Returns the highest snapshot version, either a <code>-SNAPSHOT</code> or a timestamped one.
+         *
+         * @return the latest snapshot or null if there is none
+         */
+        public Version getLatestSnapshot() {
+            return latestSnapshot;
+        }
+
+        @Override
+        public String toString() {
+            return groupId + ":" + artifactId + " " + versions;
+        }
+    }
+
+    /**
+     * State of a scanned directory, reused by the next scan if the directory is not modified.
+     */
+    private static final class DirectoryState {
+
+        final FileTime lastModified;
+        final List<Path> subdirectories;
+        final List<Version> releases;
+        final List<Version> snapshots;
+
+        DirectoryState(FileTime lastModified, List<Path> subdirectories, List<Version> releases,
+                List<Version> snapshots) {
+            this.lastModified = lastModified;
+            this.subdirectories = subdirectories;
+            this.releases = releases;
+            this.snapshots = snapshots;
+        }
+    }
+
+    /**
+     * Versions collected for an artifact during a scan.
+     */
+    private static final class Collector {
+
+        final String groupId;
+        final String artifactId;
+        final Queue<Version> releases = new ConcurrentLinkedQueue<Version>();
+        final Queue<Version> snapshots = new ConcurrentLinkedQueue<Version>();
+
+        Collector(String groupId, String artifactId) {
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+        }
+    }
+
+    private final Path root;
+
+    private final ForkJoinPool pool;
+
+    private Map<Path, DirectoryState> states = Collections.emptyMap();
+
+    /**
+     * Initializes an instance of this class, scanning with the common fork-join pool.
+     *
+     * @param root the root directory of the Maven repository
+     */
+    public MavenRepositoryScanner(Path root) {
+        this(root, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Initializes an instance of this class.
+     *
+     * @param root the root directory of the Maven repository
+     * @param pool the fork-join pool used to scan the directories in parallel
+     */
+    public MavenRepositoryScanner(Path root, ForkJoinPool pool) {
+        this.root = root;
+        this.pool = pool;
+    }
+
+    /**
+     * Scans the whole repository.
+     *
+     * @return the versions found, keyed by <code>groupId:artifactId</code>, sorted by key
+     * @throws IOException in case of errors reading the repository
+     */
+    public synchronized Map<String, ArtifactVersions> scan() throws IOException {
+        return scan(Collections.<Path, DirectoryState>emptyMap());
+    }
+
+    /**
+     * Scans the repository again, only listing the directories that were modified since the previous scan. Performs a
+     * full scan if there was no previous scan.
+     *
+     * @return the versions found, keyed by <code>groupId:artifactId</code>, sorted by key
+     * @throws IOException in case of errors reading the repository
+     */
+    public synchronized Map<String, ArtifactVersions> rescan() throws IOException {
+        return scan(states);
+    }
+
+    private Map<String, ArtifactVersions> scan(Map<Path, DirectoryState> previousStates) throws IOException {
+        Map<Path, DirectoryState> currentStates = new ConcurrentHashMap<Path, DirectoryState>();
+        ConcurrentMap<String, Collector> collectors = new ConcurrentHashMap<String, Collector>();
+        try {
+            pool.invoke(new ScanTask(root, previousStates, currentStates, collectors));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        states = currentStates;
+
+        Map<String, ArtifactVersions> result = new TreeMap<String, ArtifactVersions>();
+        for (Map.Entry<String, Collector> entry : collectors.entrySet()) {
+            Collector collector = entry.getValue();
+            List<Version> all = new ArrayList<Version>(collector.releases.size() + collector.snapshots.size());
+            all.addAll(collector.releases);
+            all.addAll(collector.snapshots);
+            result.put(entry.getKey(), new ArtifactVersions(collector.groupId, collector.artifactId,
+                    VersionIndex.of(all), max(collector.releases), max(collector.snapshots)));
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    private static Version max(Iterable<Version> versions) {
+        Version max = null;
+        for (Version version : versions) {
+            if (max == null || VersionIndex.ORDER.compare(version, max) > 0) {
+                max = version;
+            }
+        }
+        return max;
+    }
+
+    private final class ScanTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Path directory;
+        private final Map<Path, DirectoryState> previousStates;
+        private final Map<Path, DirectoryState> currentStates;
+        private final ConcurrentMap<String, Collector> collectors;
+
+        ScanTask(Path directory, Map<Path, DirectoryState> previousStates, Map<Path, DirectoryState> currentStates,
+                ConcurrentMap<String, Collector> collectors) {
+            this.directory = directory;
+            this.previousStates = previousStates;
+            this.currentStates = currentStates;
+            this.collectors = collectors;
+        }
+
+        @Override
+        protected void compute() {
+            DirectoryState state;
+            try {
+                FileTime lastModified = Files.getLastModifiedTime(directory);
+                state = previousStates.get(directory);
+                if (state == null || !state.lastModified.equals(lastModified)) {
+                    state = readDirectory(directory, lastModified);
+                }
+            } catch (NoSuchFileException e) {
+                // the directory was removed in the meantime
+                return;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            currentStates.put(directory, state);
+
+            if (!state.releases.isEmpty() || !state.snapshots.isEmpty()) {
+                Path artifactDirectory = directory.getParent();
+                String artifactId = artifactDirectory.getFileName().toString();
+                String groupId = toGroupId(root.relativize(artifactDirectory.getParent()));
+                String key = groupId + ":" + artifactId;
+                Collector collector = collectors.get(key);
+                if (collector == null) {
+                    collector = new Collector(groupId, artifactId);
+                    Collector existing = collectors.putIfAbsent(key, collector);
+                    if (existing != null) {
+                        collector = existing;
+                    }
+                }
+                collector.releases.addAll(state.releases);
+                collector.snapshots.addAll(state.snapshots);
+            }
+
+            if (!state.subdirectories.isEmpty()) {
+                List<ScanTask> tasks = new ArrayList<ScanTask>(state.subdirectories.size());
+                for (Path subdirectory : state.subdirectories) {
+                    tasks.add(new ScanTask(subdirectory, previousStates, currentStates, collectors));
+                }
+                invokeAll(tasks);
+            }
+        }
+    }
+
+    private DirectoryState readDirectory(Path directory, FileTime lastModified) throws IOException {
+        List<Path> subdirectories = new ArrayList<Path>();
+        List<Version> releases = new ArrayList<Version>(1);
+        List<Version> snapshots = new ArrayList<Version>(1);
+
+        // a version directory is at least at the <group>/<artifactId>/<version> level
+        Path artifactDirectory = directory.getParent();
+        boolean versionDirectory = directory.getNameCount() - root.getNameCount() >= 3;
+        String version = versionDirectory ? directory.getFileName().toString() : null;
+        String prefix = versionDirectory ? artifactDirectory.getFileName().toString() + "-" : null;
+        boolean snapshot = versionDirectory && version.endsWith(SNAPSHOT_SUFFIX);
+
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                BasicFileAttributes attributes;
+                try {
+                    // symbolic links are not followed to avoid cycles: they are only considered as artifact files
+                    attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                } catch (NoSuchFileException e) {
+                    continue;
+                }
+                if (attributes.isDirectory()) {
+                    subdirectories.add(entry);
+                } else if (versionDirectory) {
+                    String fileName = entry.getFileName().toString();
+                    int start = prefix.length();
+                    int end = fileName.lastIndexOf('.');
+                    if (end <= start || !fileName.startsWith(prefix)) {
+                        continue;
+                    }
+                    try {
+                        if (end - start == version.length()
+                                && fileName.regionMatches(start, version, 0, version.length())) {
+                            addVersion(snapshot ? snapshots : releases, Version.of(version));
+                        } else if (snapshot && isTimestampedSnapshot(fileName, start, end, version)) {
+                            addVersion(snapshots, new Version(fileName, start, end));
+                        }
+                    } catch (NumberFormatException e) {
+                        // not a version directory, e.g. "-", which is skipped as unparsable file names are
+                        continue;
+                    }
+                }
+            }
+        }
+        return new DirectoryState(lastModified, subdirectories, releases, snapshots);
+    }
+
+    private static void addVersion(List<Version> versions, Version version) {
+        if (!versions.contains(version)) {
+            versions.add(version);
+        }
+    }
+
+    /**
+     * Checks if the file name part between start and end is a timestamped build of the snapshot version, e.g.
+     * <code>1.0-20130129.191029-6</code> for <code>1.0-SNAPSHOT</code>.
+     */
+    private static boolean isTimestampedSnapshot(String fileName, int start, int end, String snapshotVersion) {
+        int baseLength = snapshotVersion.length() - SNAPSHOT_SUFFIX.length();
+        if (!fileName.regionMatches(start, snapshotVersion, 0, baseLength)) {
+            return false;
+        }
+        Matcher matcher = Version.MAVEN_VERSION_FILE_PATTERN.matcher(CharBuffer.wrap(fileName, start, end));
+        return matcher.matches() && matcher.end(1) == baseLength;
+    }
+
+    private static String toGroupId(Path groupPath) {
+        StringBuilder groupId = new StringBuilder();
+        for (Path segment : groupPath) {
+            if (groupId.length() > 0) {
+                groupId.append('.');
+            }
+            groupId.append(segment);
+        }
+        return groupId.toString();
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.commons;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rewrites consecutive single-row <code>INSERT</code> statements into the same table and columns into multi-row
+ * inserts, which many databases and drivers execute much faster than the same rows inserted one by one, even in a
+ * batch. This is an optional stage between {@link DatabaseScripts#getScriptStatements(java.io.Reader)} and
+ * {@link DatabaseScripts#executeStatements(List, java.sql.Connection)}.
+ * <p>
+ * Only the inserts of literal values are merged, as parsed by {@link InsertStatement}; any other statement is kept as
+ * is and ends the current group, so that the script order is preserved. A merged insert is executed as a whole: when
+ * it fails, the failure is reported for the merged statement and not for the failing row. The statements whose failures
+ * are ignored on execution, such as the DROP statements or the inserts of values containing the word DROP, are never
+ * merged, so that this tolerance does not extend to the other rows.
+ *
+ * @author Jahia Solutions Group SA
+ */
+public final class MultiRowInserts {
+
+    /**
+     * The syntax of the multi-row inserts.
+     */
+    public enum Dialect {
+
+        /**
+         * <code>INSERT INTO t (columns) VALUES (...), (...)</code>, supported by MySQL, MariaDB, PostgreSQL, SQL Server
+         * (up to 1000 rows), DB2, H2, HSQLDB and Derby.
+         */
+        STANDARD,
+
+        /**
+         * <code>INSERT ALL INTO t (columns) VALUES (...) INTO t (columns) VALUES (...) SELECT 1 FROM DUAL</code>, for
+         * Oracle.
+         */
+        ORACLE
+    }
+
+    private static final String ORACLE_SUFFIX = "\nselect 1 from dual";
+
+    private MultiRowInserts() {
+        super();
+    }
+
+    /**
+     * Merges the consecutive single-row inserts into the same table and columns of the provided statements.
+     *
+     * @param sqlStatements the SQL statements to transform
+     * @param dialect       the syntax of the multi-row inserts
+     * @param maxRows       the maximum number of rows per insert
+     * @param maxBytes      the maximum size of a merged insert in UTF-8 bytes; a single row larger than that is kept as
+     *                      is
+     * @return the transformed SQL statements, in the same order
+     */
+    public static List<String> merge(List<String> sqlStatements, Dialect dialect, int maxRows, int maxBytes) {
+        if (maxRows < 1) {
+            throw new IllegalArgumentException("Maximum row count must be positive: " + maxRows);
+        }
+        List<String> merged = new ArrayList<String>(sqlStatements.size());
+        List<InsertStatement> group = new ArrayList<InsertStatement>();
+        String groupTarget = null;
+        int groupBytes = 0;
+        for (String sql : sqlStatements) {
+            InsertStatement insert = maxRows > 1 && !DatabaseScripts.isDrop(sql.toLowerCase())
+                    ? InsertStatement.parse(sql) : null;
+            if (insert == null) {
+                flush(group, dialect, merged);
+                merged.add(sql);
+                continue;
+            }
+            String target = getTarget(insert);
+            int rowBytes = getRowSize(insert, target, dialect);
+            if (!group.isEmpty() && (!target.equals(groupTarget) || group.size() == maxRows
+                    || groupBytes + rowBytes > maxBytes)) {
+                flush(group, dialect, merged);
+            }
+            if (group.isEmpty()) {
+                groupTarget = target;
+                groupBytes = getHeaderSize(target, dialect);
+            }
+            group.add(insert);
+            groupBytes += rowBytes;
+        }
+        flush(group, dialect, merged);
+        return merged;
+    }
+
+    /**
+     * Returns the <code>table (columns)</code> part of the insert.
+     */
+    private static String getTarget(InsertStatement insert) {
+        return insert.getColumns() != null ? insert.getTable() + " " + insert.getColumns() : insert.getTable();
+    }
+
+    private static int getHeaderSize(String target, Dialect dialect) {
+        return dialect == Dialect.ORACLE ? "insert all".length() + ORACLE_SUFFIX.length()
+                : "insert into  values\n".length() + utf8Length(target);
+    }
+
+    private static int getRowSize(InsertStatement insert, String target, Dialect dialect) {
+        int size = utf8Length(insert.getValues());
+        return dialect == Dialect.ORACLE ? size + "\ninto  values ".length() + utf8Length(target) : size + ",\n".length();
+    }
+
+    private static void flush(List<InsertStatement> group, Dialect dialect, List<String> merged) {
+        if (group.isEmpty()) {
+            return;
+        }
+        if (group.size() == 1) {
+            merged.add(group.get(0).getSql());
+        } else {
+            String target = getTarget(group.get(0));
+            StringBuilder sql = new StringBuilder();
+            if (dialect == Dialect.ORACLE) {
+                sql.append("insert all");
+                for (InsertStatement insert : group) {
+                    sql.append("\ninto ").append(target).append(" values ").append(insert.getValues());
+                }
+                sql.append(ORACLE_SUFFIX);
+            } else {
+                sql.append("insert into ").append(target).append(" values\n");
+                for (int i = 0; i < group.size(); i++) {
+                    if (i > 0) {
+                        sql.append(",\n");
+                    }
+                    sql.append(group.get(i).getValues());
+                }
+            }
+            merged.add(sql.toString());
+        }
+        group.clear();
+    }
+
+    private static int utf8Length(String value) {
+        int length = value.length();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x800) {
+                // surrogate pairs count 2 + 2 bytes
+                length += Character.isSurrogate(c) ? 1 : 2;
+            } else if (c >= 0x80) {
+                length++;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.commons;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+/**
+ * Executes SQL statements concurrently on several connections of a data source, while keeping the script order between
+ * the statements that depend on each other.
+ * <p>
+ * Two statements depend on each other when they reference a common database object, e.g. the table created by the
+ * first one and indexed by the second one. The referenced objects are the names following the <code>TABLE</code>,
+ * <code>INDEX</code>, <code>VIEW</code>, <code>SEQUENCE</code>, <code>ON</code>, <code>INTO</code>,
+ * <code>FROM</code>, <code>JOIN</code>, <code>UPDATE</code>, <code>USING</code>, <code>REFERENCES</code>,
+ * <code>TO</code> and <code>LIKE</code> keywords, unless they are keywords themselves, like in
+ * <code>ON DELETE CASCADE</code>. The statements whose references cannot be determined with certainty are barriers:
+ * they are executed alone, after all the previous statements and before all the following ones. These are the
+ * statements other than DDL and DML ones, e.g. <code>COMMENT</code> or <code>GRANT</code>, the triggers, procedures
+ * and PL/SQL blocks, the statements with a function call, which may use a sequence or another object, and the ones
+ * listing several comma-separated tables after <code>FROM</code> or <code>UPDATE</code>.
+ *
+ * @author Jahia Solutions Group SA
+ * @see DatabaseScripts#executeStatements(List, DataSource, int)
+ */
+final class ParallelStatementExecutor {
+
+    private static final Pattern OBJECT_REFERENCE = Pattern.compile(
+            "\\b(table|index|view|sequence|on|into|from|join|update|using|references|to|like)\\s+"
+                    + "(?:if\\s+(?:not\\s+)?exists\\s+)?([\\w$#.\"`\\[\\]]+)");
+
+    private static final Pattern PARENTHESIS = Pattern.compile("(?:\\b(key|constraint|unique)\\s+)?"
+            + "([\\w$#.\"`\\[\\]]+)\\s*\\(");
+
+    private static final Pattern QUOTED_LITERAL = Pattern.compile("'[^']*'");
+
+    private static final Pattern BARRIER_CONTENT = Pattern.compile("\\b(?:trigger|procedure|function|package|begin)\\b");
+
+    private static final Set<String> PARALLEL_KINDS = new HashSet<String>(
+            Arrays.asList("create", "alter", "drop", "insert", "update", "delete", "merge"));
+
+    /**
+     * The keywords which can follow an object reference keyword without being an object name.
+     */
+    private static final Set<String> KEYWORDS = new HashSet<String>(Arrays.asList("action", "all", "cascade", "column",
+            "constraint", "default", "delete", "foreign", "from", "global", "index", "insert", "into", "join", "key",
+            "lateral", "local", "materialized", "no", "not", "null", "only", "primary", "restrict", "row", "select",
+            "sequence", "set", "table", "temporary", "unique", "update", "using", "values", "view", "where"));
+
+    /**
+     * The keywords and column types which can be followed by a parenthesis without being a function call.
+     */
+    private static final Set<String> NOT_FUNCTIONS = new HashSet<String>(Arrays.asList("add", "and", "as", "bigint",
+            "binary", "bit", "blob", "char", "character", "check", "clob", "datetime", "datetime2", "dec", "decimal",
+            "default", "double", "enum", "exists", "float", "foreign", "in", "int", "integer", "key", "mediumint",
+            "modify", "nchar", "not", "number", "numeric", "nvarchar", "nvarchar2", "on", "or", "precision", "primary",
+            "raw", "real", "set", "smallint", "text", "time", "timestamp", "tinyint", "unique", "using", "value",
+            "values", "varbinary", "varchar", "varchar2", "varying", "year"));
+
+    private static final Pattern FROM_CLAUSE_END = Pattern.compile("\\b(?:where|group|order|having|limit|union|"
+            + "intersect|except|minus|set|values|select|returning|when|window|for)\\b");
+
+    private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+    private final DataSource dataSource;
+    private final int parallelism;
+    private final StatementExecutionListener listener;
+
+    ParallelStatementExecutor(DataSource dataSource, int parallelism, StatementExecutionListener listener) {
+        this.dataSource = dataSource;
+        this.parallelism = parallelism;
+        this.listener = listener;
+    }
+
+    /**
+     * Returns the names of the database objects referenced by the statement, or null if the statement must be executed
+     * as a barrier.
+     */
+    static Set<String> getReferencedObjects(String sql) {
+        // the content of the literals is ignored, like "x (" in "values ('x (')"
+        String lowerCaseSql = QUOTED_LITERAL.matcher(sql.toLowerCase(Locale.ENGLISH)).replaceAll("''");
+        int firstSpace = 0;
+        while (firstSpace < lowerCaseSql.length() && !Character.isWhitespace(lowerCaseSql.charAt(firstSpace))) {
+            firstSpace++;
+        }
+        if (!PARALLEL_KINDS.contains(lowerCaseSql.substring(0, firstSpace))
+                || BARRIER_CONTENT.matcher(lowerCaseSql).find()) {
+            return null;
+        }
+        Set<String> objects = new LinkedHashSet<String>();
+        Set<Integer> referenceEnds = new HashSet<Integer>();
+        Matcher matcher = OBJECT_REFERENCE.matcher(lowerCaseSql);
+        int start = 0;
+        while (matcher.find(start)) {
+            String name = matcher.group(2);
+            if (KEYWORDS.contains(name)) {
+                // e.g. "on delete cascade" or "comment on table": the keyword may introduce the name itself
+                start = matcher.start(2);
+                continue;
+            }
+            start = matcher.end();
+            String keyword = matcher.group(1);
+            if (("from".equals(keyword) || "join".equals(keyword) || "update".equals(keyword))
+                    && isTableList(lowerCaseSql, matcher.end())) {
+                return null;
+            }
+            referenceEnds.add(matcher.end());
+            // the schema is ignored, so that a qualified and an unqualified reference to the same object match
+            name = name.substring(name.lastIndexOf('.') + 1).replaceAll("[\"`\\[\\]]", "");
+            if (!name.isEmpty()) {
+                objects.add(name);
+            }
+        }
+        if (objects.isEmpty()) {
+            return null;
+        }
+        Matcher parenthesis = PARENTHESIS.matcher(lowerCaseSql);
+        while (parenthesis.find()) {
+            if (parenthesis.group(1) == null && !NOT_FUNCTIONS.contains(parenthesis.group(2))
+                    && !referenceEnds.contains(parenthesis.end(2))) {
+                // a function call may reference a sequence or any other object, e.g. "default nextval('s')"
+                return null;
+            }
+        }
+        return objects;
+    }
+
+    /**
+     * Checks if the table referenced just before the provided position is followed by other comma-separated tables,
+     * e.g. in <code>from a, b</code>, which are not all detected as references.
+     */
+    private static boolean isTableList(String lowerCaseSql, int position) {
+        Matcher clauseEnd = FROM_CLAUSE_END.matcher(lowerCaseSql);
+        int end = clauseEnd.find(position) ? clauseEnd.start() : lowerCaseSql.length();
+        int depth = 0;
+        for (int i = position; i < end; i++) {
+            char c = lowerCaseSql.charAt(i);
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth < 0) {
+                // end of the sub-query
+                return false;
+            } else if (c == ',' && depth == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Computes, for each statement, the indexes of the previous statements it directly depends on.
+     */
+    static List<List<Integer>> getDependencies(List<String> sqlStatements) {
+        List<List<Integer>> dependencies = new ArrayList<List<Integer>>(sqlStatements.size());
+        Map<String, Integer> lastByObject = new HashMap<String, Integer>();
+        List<Integer> sinceBarrier = new ArrayList<Integer>();
+        int barrier = -1;
+        for (int i = 0; i < sqlStatements.size(); i++) {
+            Set<String> objects = getReferencedObjects(sqlStatements.get(i));
+            List<Integer> statementDependencies;
+            if (objects == null) {
+                statementDependencies = new ArrayList<Integer>(sinceBarrier);
+                if (barrier >= 0) {
+                    statementDependencies.add(barrier);
+                }
+                barrier = i;
+                sinceBarrier.clear();
+                lastByObject.clear();
+            } else {
+                Set<Integer> previous = new LinkedHashSet<Integer>();
+                for (String object : objects) {
+                    Integer last = lastByObject.put(object, i);
+                    if (last != null) {
+                        previous.add(last);
+                    }
+                }
+                if (previous.isEmpty() && barrier >= 0) {
+                    previous.add(barrier);
+                }
+                statementDependencies = new ArrayList<Integer>(previous);
+                sinceBarrier.add(i);
+            }
+            dependencies.add(statementDependencies.isEmpty() ? Collections.<Integer>emptyList()
+                    : statementDependencies);
+        }
+        return dependencies;
+    }
+
+    /**
+     * Executes the statements, each worker thread using its own connection of the data source.
+     */
+    void execute(final List<String> sqlStatements) throws SQLException {
+        if (sqlStatements.isEmpty()) {
+            return;
+        }
+        final List<Connection> connections = Collections.synchronizedList(new ArrayList<Connection>());
+        final ThreadLocal<Connection> connection = new ThreadLocal<Connection>();
+        final AtomicReference<SQLException> failure = new AtomicReference<SQLException>();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+            private final String prefix = "database-scripts-" + POOL_COUNT.incrementAndGet() + "-";
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, prefix + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            List<List<Integer>> dependencies = getDependencies(sqlStatements);
+            List<CompletableFuture<Void>> futures = new ArrayList<CompletableFuture<Void>>(sqlStatements.size());
+            for (int i = 0; i < sqlStatements.size(); i++) {
+                final int index = i;
+                final String sql = sqlStatements.get(i);
+                List<Integer> statementDependencies = dependencies.get(i);
+                CompletableFuture<?>[] previous = new CompletableFuture<?>[statementDependencies.size()];
+                for (int j = 0; j < previous.length; j++) {
+                    previous[j] = futures.get(statementDependencies.get(j));
+                }
+                futures.add(CompletableFuture.allOf(previous).thenRunAsync(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (failure.get() != null) {
+                            // stop scheduling new statements after a failure
+                            return;
+                        }
+                        try {
+                            Connection conn = connection.get();
+                            if (conn == null) {
+                                conn = dataSource.getConnection();
+                                connections.add(conn);
+                                connection.set(conn);
+                            }
+                            Statement stmt = conn.createStatement();
+                            try {
+                                DatabaseScripts.executeStatement(stmt, sql, index, listener);
+                            } finally {
+                                stmt.close();
+                            }
+                        } catch (SQLException e) {
+                            failure.compareAndSet(null, e);
+                            throw new CompletionException(e);
+                        }
+                    }
+                }, executor));
+            }
+            try {
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()])).join();
+            } catch (CompletionException e) {
+                if (failure.get() == null) {
+                    throw e;
+                }
+            }
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+        } finally {
+            executor.shutdown();
+            for (Connection conn : connections) {
+                try {
+                    conn.close();
+                } catch (SQLException e) {
+                    // the statements are executed, the connection is just given back to the data source
+                }
+            }
+        }
+    }
+}
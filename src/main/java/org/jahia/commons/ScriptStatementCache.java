@@ -0,0 +1,284 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.commons;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * On-disk cache of the statements of SQL scripts, so that a script already parsed, e.g. by another cluster node sharing
+ * the cache directory or before a restart, is not parsed again.
+ * <p>
+ * The statements of a script are stored in a file named after the SHA-256 hash of the script content and of the
+ * version of the parsing rules, so that the cache entry is not used anymore as soon as either the script or the parser
+ * changes. The file starts with a magic number, the format and parser versions and the content hash, which are checked
+ * when the file is read, followed by the count of statements and the statements, each one prefixed with its length in
+ * bytes and encoded in UTF-8. The files are memory-mapped for reading; they are written to a temporary file first and
+ * then moved, so that concurrent readers never see a partial entry. Stale entries are never deleted by the cache.
+ *
+ * @author Jahia Solutions Group SA
+ * @see DatabaseScripts#getScriptStatements(java.io.Reader)
+ */
+public final class ScriptStatementCache {
+
+    private static final int MAGIC = 0x4a53514c; // "JSQL"
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int HASH_SIZE = 32;
+
+    private static final int HEADER_SIZE = 4 + 4 + 4 + HASH_SIZE + 4;
+
+    private static final String EXTENSION = ".statements";
+
+    private static final int MAX_MAPPED_SIZE = Integer.MAX_VALUE;
+
+    private final Path directory;
+
+    /**
+     * Initializes a cache storing its entries in the provided directory, which is created when the first entry is
+     * stored.
+     *
+     * @param directory the cache directory
+     */
+    public ScriptStatementCache(Path directory) {
+        this.directory = directory;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the statements of the provided UTF-8 encoded script file, from the cache if the script was already
+     * parsed, parsing it and storing its statements otherwise.
+     *
+     * @param script the SQL script file
+     * @return the read-only list of SQL statements to execute
+     * @throws IOException in case of a script or cache reading error
+     */
+    public List<String> getScriptStatements(Path script) throws IOException {
+        MessageDigest digest = newDigest();
+        try (FileChannel channel = FileChannel.open(script, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > MAX_MAPPED_SIZE) {
+                // the statements are parsed from the bytes being hashed, so that they are stored under their own hash
+                DigestInputStream in = new DigestInputStream(Channels.newInputStream(channel), digest);
+                List<String> statements = Collections.unmodifiableList(DatabaseScripts
+                        .getScriptStatements(new ScriptStatementReader(Channels.newChannel(in))));
+                write(digest.digest(), statements);
+                return statements;
+            }
+            MappedByteBuffer content = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            digest.update(content.duplicate());
+            byte[] hash = digest.digest();
+            List<String> statements = read(hash);
+            if (statements == null) {
+                // parses the same mapped bytes that were hashed, not the current content of the file
+                statements = Collections.unmodifiableList(
+                        DatabaseScripts.getScriptStatements(ScriptStatementReader.open(content)));
+                write(hash, statements);
+            }
+            return statements;
+        }
+    }
+
+    /**
+     * Returns the statements of the provided UTF-8 encoded script content, e.g. a class path resource, from the cache
+     * if the script was already parsed, parsing it and storing its statements otherwise. The stream is fully read, but
+     * not closed.
+     *
+     * @param script the SQL script content
+     * @return the read-only list of SQL statements to execute
+     * @throws IOException in case of a script or cache reading error
+     */
+    public List<String> getScriptStatements(InputStream script) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = script.read(buffer)) != -1) {
+            content.write(buffer, 0, read);
+        }
+        byte[] bytes = content.toByteArray();
+        MessageDigest digest = newDigest();
+        digest.update(bytes);
+        byte[] hash = digest.digest();
+        List<String> statements = read(hash);
+        if (statements == null) {
+            statements = parseAndStore(new ByteArrayInputStream(bytes), hash);
+        }
+        return statements;
+    }
+
+    private List<String> parseAndStore(InputStream script, byte[] hash) throws IOException {
+        List<String> statements = Collections
+                .unmodifiableList(DatabaseScripts.getScriptStatements(new InputStreamReader(script,
+                        StandardCharsets.UTF_8)));
+        write(hash, statements);
+        return statements;
+    }
+
+    /**
+     * Returns a digest already fed with the parser version, so that its result changes with the parsing rules.
+     */
+    private static MessageDigest newDigest() {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is supported by every Java platform
+            throw new IllegalStateException(e);
+        }
+        digest.update(ByteBuffer.allocate(8).putInt(FORMAT_VERSION).putInt(ScriptStatementReader.VERSION).array());
+        return digest;
+    }
+
+    private Path getEntry(byte[] hash) {
+        StringBuilder name = new StringBuilder(hash.length * 2 + EXTENSION.length());
+        for (byte b : hash) {
+            name.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return directory.resolve(name.append(EXTENSION).toString());
+    }
+
+    /**
+     * Reads the cached statements of the script with the provided hash, returning null if there is no valid entry.
+     */
+    private List<String> read(byte[] hash) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(getEntry(hash), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > MAX_MAPPED_SIZE) {
+                return null;
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION
+                    || buffer.getInt() != ScriptStatementReader.VERSION) {
+                return null;
+            }
+            byte[] entryHash = new byte[HASH_SIZE];
+            buffer.get(entryHash);
+            if (!MessageDigest.isEqual(hash, entryHash)) {
+                return null;
+            }
+            int count = buffer.getInt();
+            if (count < 0 || count > buffer.remaining() / 4) {
+                return null;
+            }
+            List<String> statements = new ArrayList<String>(count);
+            byte[] bytes = new byte[0];
+            for (int i = 0; i < count; i++) {
+                int length = buffer.getInt();
+                if (length < 0 || length > buffer.remaining()) {
+                    return null;
+                }
+                if (bytes.length < length) {
+                    bytes = new byte[Math.max(length, bytes.length * 2)];
+                }
+                buffer.get(bytes, 0, length);
+                statements.add(new String(bytes, 0, length, StandardCharsets.UTF_8));
+            }
+            return buffer.hasRemaining() ? null : Collections.unmodifiableList(statements);
+        } catch (BufferUnderflowException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stores the statements of the script with the provided hash, replacing any existing entry.
+     */
+    private void write(byte[] hash, List<String> statements) throws IOException {
+        Files.createDirectories(directory);
+        Path entry = getEntry(hash);
+        Path temp = Files.createTempFile(directory, entry.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(ScriptStatementReader.VERSION).put(hash)
+                        .putInt(statements.size());
+                out.write(header.array());
+                ByteBuffer length = ByteBuffer.allocate(4);
+                for (String statement : statements) {
+                    byte[] bytes = statement.getBytes(StandardCharsets.UTF_8);
+                    length.clear();
+                    out.write(length.putInt(bytes.length).array());
+                    out.write(bytes);
+                }
+            }
+            try {
+                Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
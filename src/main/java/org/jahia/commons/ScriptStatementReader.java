@@ -0,0 +1,470 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.commons;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the executable SQL statements of a script one at a time, so that only the statement being read is kept in
+ * memory.
+ * <p>
+ * The script is scanned once, character by character, by a small state machine tracking quoted literals and
+ * comments. As in the former line-based parser, a quoted literal ends with its line, so that an unbalanced apostrophe,
+ * e.g. in a comment or a double-quoted identifier, does not merge the following statements. Line comments start with
+ * <code>#</code>, <code>//</code>, <code>--</code> or <code>REM </code> and block comments are enclosed in
+ * <code>/* ... *&#47;</code>, possibly on several lines. A statement ends with a line ending with <code>;</code>,
+ * which is removed unless the line ends with <code>end;</code> (PL/SQL blocks) or <code>end $$;</code> (MySQL
+ * triggers, converted to <code>end;</code>). Oracle <code>/</code> lines and MySQL <code>delimiter</code>
+ * instructions are skipped. Lines are trimmed and joined with a line feed.
+ * <p>
+ * The script is read either from a {@link Reader} or from UTF-8 encoded bytes, memory-mapped from a file or read from a
+ * channel, which are decoded in bulk into the character buffer scanned by the lexer. The bytes are decoded from a heap
+ * buffer, as the JDK decoders are much slower on direct or mapped buffers.
+ *
+ * @author Sergiy Shyrkov
+ * @see DatabaseScripts#getScriptStatements(Reader)
+ */
+final class ScriptStatementReader implements Closeable {
+
+    /**
+     * Version of the parsing rules, to be incremented whenever a script may be split differently, so that the
+     * statements stored by {@link ScriptStatementCache} are parsed again.
+     */
+    static final int VERSION = 3;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final int DECODED_BUFFER_SIZE = 64 * 1024;
+
+    private static final int BYTE_BUFFER_SIZE = 1024 * 1024;
+
+    private static final char[] DELIMITER = "delimiter ".toCharArray();
+
+    private final Reader reader;
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer mapped;
+    private final ByteBuffer bytes;
+    private final CharsetDecoder decoder;
+    private boolean endOfInput;
+    private boolean flushed;
+
+    private final char[] buffer;
+    private int position;
+    private int limit;
+    private boolean skipLineFeed;
+
+    private char[] line = new char[256];
+    private int lineLength;
+
+    private final StringBuilder statement = new StringBuilder();
+
+    private boolean inBlockComment;
+    private boolean endOfScript;
+
+    ScriptStatementReader(Reader reader) {
+        this.reader = reader;
+        this.channel = null;
+        this.mapped = null;
+        this.bytes = null;
+        this.decoder = null;
+        this.buffer = new char[BUFFER_SIZE];
+    }
+
+    /**
+     * Reads the UTF-8 encoded script from the provided channel.
+     */
+    ScriptStatementReader(ReadableByteChannel channel) {
+        this(channel, null);
+    }
+
+    private ScriptStatementReader(ReadableByteChannel channel, ByteBuffer mapped) {
+        this.reader = null;
+        this.channel = channel;
+        this.mapped = mapped;
+        this.bytes = ByteBuffer.allocate(BYTE_BUFFER_SIZE).flip();
+        this.decoder = StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        this.buffer = new char[DECODED_BUFFER_SIZE];
+    }
+
+    /**
+     * Opens the UTF-8 encoded script file, which is memory-mapped unless it is larger than 2 GB.
+     */
+    static ScriptStatementReader open(Path script) throws IOException {
+        FileChannel fileChannel = FileChannel.open(script, StandardOpenOption.READ);
+        try {
+            long size = fileChannel.size();
+            if (size > Integer.MAX_VALUE) {
+                return new ScriptStatementReader(fileChannel);
+            }
+            ScriptStatementReader statements = new ScriptStatementReader(null,
+                    fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+            // the mapping stays valid once the channel is closed
+            fileChannel.close();
+            return statements;
+        } catch (IOException | RuntimeException e) {
+            fileChannel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the UTF-8 encoded script from the provided buffer, e.g. a memory-mapped file, from its position to its
+     * limit.
+     */
+    static ScriptStatementReader open(ByteBuffer content) {
+        return new ScriptStatementReader(null, content);
+    }
+
+    /**
+     * Returns the next statement of the script.
+     *
+     * @return the next statement or null if the end of the script is reached
+     * @throws IOException in case of reading error
+     */
+    String readStatement() throws IOException {
+        while (!endOfScript) {
+            if (!readLine()) {
+                endOfScript = true;
+                String sqlStatement = trim(statement);
+                statement.setLength(0);
+                return !sqlStatement.isEmpty() ? sqlStatement : null;
+            }
+            String sqlStatement = processLine();
+            if (sqlStatement != null) {
+                return sqlStatement;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads the next line into the line buffer, without its terminator (line feed, carriage return or both).
+     *
+     * @return false if the end of the script is reached
+     */
+    private boolean readLine() throws IOException {
+        lineLength = 0;
+        while (true) {
+            if (position >= limit) {
+                int read = reader != null ? reader.read(buffer, 0, buffer.length) : decode();
+                if (read <= 0) {
+                    position = 0;
+                    limit = 0;
+                    return lineLength > 0;
+                }
+                position = 0;
+                limit = read;
+            }
+            if (skipLineFeed) {
+                skipLineFeed = false;
+                if (buffer[position] == '\n') {
+                    position++;
+                    continue;
+                }
+            }
+            int start = position;
+            while (position < limit) {
+                char c = buffer[position];
+                if (c == '\n' || c == '\r') {
+                    appendToLine(start, position);
+                    position++;
+                    skipLineFeed = c == '\r';
+                    return true;
+                }
+                position++;
+            }
+            appendToLine(start, limit);
+        }
+    }
+
+    /**
+     * Decodes the next bytes of the script into the character buffer, copying them from the mapped file or reading them
+     * from the channel if needed.
+     *
+     * @return the number of decoded characters or -1 at the end of the script
+     */
+    private int decode() throws IOException {
+        if (flushed) {
+            return -1;
+        }
+        CharBuffer out = CharBuffer.wrap(buffer);
+        while (true) {
+            CoderResult result = decoder.decode(bytes, out, endOfInput);
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (out.position() > 0 && (result.isOverflow() || !endOfInput)) {
+                return out.position();
+            }
+            if (endOfInput) {
+                decoder.flush(out);
+                flushed = true;
+                return out.position() > 0 ? out.position() : -1;
+            }
+            bytes.compact();
+            if (mapped != null) {
+                int length = Math.min(mapped.remaining(), bytes.remaining());
+                int limit = mapped.limit();
+                mapped.limit(mapped.position() + length);
+                bytes.put(mapped);
+                mapped.limit(limit);
+                endOfInput = !mapped.hasRemaining();
+            } else if (channel.read(bytes) < 0) {
+                endOfInput = true;
+            }
+            bytes.flip();
+        }
+    }
+
+    private void appendToLine(int start, int end) {
+        int length = end - start;
+        if (lineLength + length > line.length) {
+            char[] grown = new char[Math.max(line.length * 2, lineLength + length)];
+            System.arraycopy(line, 0, grown, 0, lineLength);
+            line = grown;
+        }
+        System.arraycopy(buffer, start, line, lineLength, length);
+        lineLength += length;
+    }
+
+    /**
+     * Removes the comments from the current line and appends it to the current statement.
+     *
+     * @return the statement if the line terminates it, null otherwise
+     */
+    private String processLine() {
+        char[] l = line;
+        int n = lineLength;
+        int start = 0;
+        int end = n;
+        while (start < end && l[start] <= ' ') {
+            start++;
+        }
+        while (end > start && l[end - 1] <= ' ') {
+            end--;
+        }
+        if (end - start == 1 && l[start] == '/') {
+            // '/' indicates the end of the PL/SQL script for Oracle -> skip it here
+            return null;
+        }
+
+        // strip the comments, compacting the remaining content at the beginning of the line buffer; as before, a quoted
+        // literal does not span several lines, so that an unbalanced apostrophe only affects the rest of its line
+        boolean quoted = false;
+        boolean commented = inBlockComment;
+        int length = 0;
+        int i = 0;
+        scan: while (i < n) {
+            char c = l[i];
+            if (commented) {
+                if (c == '*' && i + 1 < n && l[i + 1] == '/') {
+                    commented = false;
+                    i += 2;
+                } else {
+                    i++;
+                }
+                continue;
+            }
+            if (quoted) {
+                // copy the quoted literal up to its closing quote
+                while (c != '\'') {
+                    l[length++] = c;
+                    if (++i == n) {
+                        break scan;
+                    }
+                    c = l[i];
+                }
+                quoted = false;
+            } else {
+                switch (c) {
+                    case '\'':
+                        quoted = true;
+                        break;
+                    case '#':
+                        break scan;
+                    case '-':
+                        if (i + 1 < n && l[i + 1] == '-') {
+                            break scan;
+                        }
+                        break;
+                    case 'R':
+                        if (i + 3 < n && l[i + 1] == 'E' && l[i + 2] == 'M' && l[i + 3] == ' ') {
+                            break scan;
+                        }
+                        break;
+                    case '/':
+                        if (i + 1 < n && l[i + 1] == '/') {
+                            break scan;
+                        } else if (i + 1 < n && l[i + 1] == '*') {
+                            commented = true;
+                            l[length++] = ' ';
+                            i += 2;
+                            continue scan;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            l[length++] = c;
+            i++;
+        }
+        inBlockComment = commented;
+
+        // is the line after comment removal ?
+        start = 0;
+        end = length;
+        while (start < end && l[start] <= ' ') {
+            start++;
+        }
+        while (end > start && l[end - 1] <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            return null;
+        }
+
+        if (startsWithIgnoreCase(l, start, end, DELIMITER)) {
+            // we skip delimiter instruction for MySQL
+            return null;
+        } else if (l[end - 1] == ';') {
+            // found separator char in the script file, finish constructing
+            boolean keepSeparator = endsWithIgnoreCase(l, start, end, "end;")
+                    || endsWithIgnoreCase(l, start, end, "end $$;");
+            String sqlStatement;
+            if (statement.length() == 0) {
+                // single line statement: avoid copying it to the statement buffer
+                int statementEnd = keepSeparator ? end : end - 1;
+                while (statementEnd > start && l[statementEnd - 1] <= ' ') {
+                    statementEnd--;
+                }
+                sqlStatement = new String(l, start, statementEnd - start);
+            } else {
+                statement.append(l, start, (keepSeparator ? end : end - 1) - start);
+                sqlStatement = trim(statement);
+                statement.setLength(0);
+            }
+            if (sqlStatement.isEmpty()) {
+                return null;
+            }
+            if (endsWithIgnoreCase(sqlStatement, "end $$;")) {
+                // the $$ is a special case for a MySQL delimiter when creating a trigger
+                sqlStatement = sqlStatement.substring(0, sqlStatement.length() - " $$;".length()) + ";";
+            }
+            return sqlStatement;
+        } else {
+            statement.append(l, start, end - start);
+            statement.append('\n');
+            return null;
+        }
+    }
+
+    private static boolean startsWithIgnoreCase(char[] chars, int start, int end, char[] prefix) {
+        if (end - start < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (Character.toLowerCase(chars[start + i]) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the characters end with the provided lower case ASCII suffix, ignoring case.
+     */
+    private static boolean endsWithIgnoreCase(char[] chars, int start, int end, String suffix) {
+        int offset = end - suffix.length();
+        if (offset < start) {
+            return false;
+        }
+        for (int i = 0; i < suffix.length(); i++) {
+            char c = chars[offset + i];
+            if (c != suffix.charAt(i) && (c < 'A' || c > 'Z' || c + ('a' - 'A') != suffix.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean endsWithIgnoreCase(String s, String suffix) {
+        return s.regionMatches(true, s.length() - suffix.length(), suffix, 0, suffix.length());
+    }
+
+    private static String trim(StringBuilder chars) {
+        int start = 0;
+        int end = chars.length();
+        while (start < end && chars.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && chars.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return chars.substring(start, end);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (reader != null) {
+            reader.close();
+        } else if (channel != null) {
+            channel.close();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,124 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.commons;
+
+import java.sql.SQLException;
+
+/**
+ * Callback notified of the execution of each statement of an SQL script by {@link DatabaseScripts}, e.g. to log the
+ * failures or to measure the time spent per statement. Each statement is reported once, with its index in the script
+ * or list of statements. The statements executed successfully as part of a JDBC batch or of a multi-statement payload
+ * are reported once the batch or payload is executed, each with an equal share of its execution time; the ones executed
+ * again one at a time after a failure of the batch or payload are reported when they are executed again.
+ * <p>
+ * A listener provided to {@link DatabaseScripts} is notified in addition to the default
+ * {@link LoggingStatementListener}, so that the failures are logged in any case.
+ * <p>
+ * When statements are executed in parallel, the listener is called concurrently from several threads.
+ *
+ * @author Jahia Solutions Group SA
+ * @see StatementStatistics
+ * @see LoggingStatementListener
+ */
+public interface StatementExecutionListener {
+
+    /**
+     * How a statement failure is handled by the script execution.
+     */
+    enum FailureHandling {
+
+        /**
+         * The failure is ignored, as for DROP statements.
+         */
+        IGNORED,
+
+        /**
+         * The failure is reported to the listener and the execution goes on, as for ALTER TABLE and CREATE INDEX
+         * statements.
+         */
+        LOGGED,
+
+        /**
+         * The failure stops the execution and is thrown to the caller.
+         */
+        THROWN
+    }
+
+    /**
+     * Called before the statement is executed.
+     *
+     * @param index the index of the statement in the script or list of statements
+     * @param kind  the kind of the statement
+     * @param sql   the SQL statement
+     */
+    default void beforeStatement(int index, StatementKind kind, String sql) {
+    }
+
+    /**
+     * Called after the statement is executed successfully.
+     *
+     * @param index        the index of the statement in the script or list of statements
+     * @param kind         the kind of the statement
+     * @param sql          the SQL statement
+     * @param elapsedNanos the execution time in nanoseconds
+     * @param updateCount  the update count returned by the database, or <code>-1</code> if the statement returned a
+     *                     result set or no update count
+     */
+    default void afterStatement(int index, StatementKind kind, String sql, long elapsedNanos, int updateCount) {
+    }
+
+    /**
+     * Called when the statement fails.
+     *
+     * @param index        the index of the statement in the script or list of statements
+     * @param kind         the kind of the statement
+     * @param sql          the SQL statement
+     * @param elapsedNanos the time until the failure in nanoseconds
+     * @param error        the failure
+     * @param handling     how the failure is handled by the script execution
+     */
+    default void statementFailed(int index, StatementKind kind, String sql, long elapsedNanos, SQLException error,
+            FailureHandling handling) {
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.commons;
+
+import java.util.Locale;
+
+/**
+ * Kind of an SQL statement of a script, as reported to a {@link StatementExecutionListener}.
+ *
+ * @author Jahia Solutions Group SA
+ */
+public enum StatementKind {
+
+    CREATE_TABLE, CREATE_INDEX, CREATE_OTHER, ALTER_TABLE, DROP, INSERT, UPDATE, DELETE, MERGE, OTHER;
+
+    /**
+     * Returns the kind of the provided statement, from its first keywords.
+     *
+     * @param sql the SQL statement
+     * @return the statement kind
+     */
+    public static StatementKind of(String sql) {
+        String[] keywords = sql.trim().toLowerCase(Locale.ENGLISH).split("\\s+", 4);
+        switch (keywords[0]) {
+            case "create":
+                if (keywords.length > 1 && keywords[1].equals("table")) {
+                    return CREATE_TABLE;
+                } else if (keywords.length > 1 && keywords[1].equals("index")
+                        || keywords.length > 2 && keywords[1].equals("unique") && keywords[2].equals("index")) {
+                    return CREATE_INDEX;
+                }
+                return CREATE_OTHER;
+            case "alter":
+                return keywords.length > 1 && keywords[1].equals("table") ? ALTER_TABLE : OTHER;
+            case "drop":
+                return DROP;
+            case "insert":
+                return INSERT;
+            case "update":
+                return UPDATE;
+            case "delete":
+                return DELETE;
+            case "merge":
+                return MERGE;
+            default:
+                return OTHER;
+        }
+    }
+}
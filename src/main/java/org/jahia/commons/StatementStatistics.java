@@ -0,0 +1,220 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.commons;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Statement listener collecting the execution time of the statements of SQL scripts: the slowest statements and the
+ * total time and count per {@link StatementKind statement kind}, e.g. to find which table or index makes an upgrade
+ * slow. The failed statements are counted with the time until their failure. This class is thread-safe.
+ *
+ * @author Jahia Solutions Group SA
+ */
+public final class StatementStatistics implements StatementExecutionListener {
+
+    /**
+     * The execution time of a statement.
+     */
+    public static final class Timing {
+
+        private final int index;
+        private final StatementKind kind;
+        private final String sql;
+        private final long elapsedNanos;
+
+        Timing(int index, StatementKind kind, String sql, long elapsedNanos) {
+            this.index = index;
+            this.kind = kind;
+            this.sql = sql;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public StatementKind getKind() {
+            return kind;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return TimeUnit.NANOSECONDS.toMillis(elapsedNanos) + " ms #" + index + " " + sql;
+        }
+    }
+
+    private static final Comparator<Timing> FASTEST_FIRST = new Comparator<Timing>() {
+        @Override
+        public int compare(Timing left, Timing right) {
+            return Long.compare(left.elapsedNanos, right.elapsedNanos);
+        }
+    };
+
+    private final int slowestCount;
+    private final PriorityQueue<Timing> slowest;
+    private final Map<StatementKind, long[]> totals = new EnumMap<StatementKind, long[]>(StatementKind.class);
+
+    /**
+     * Initializes an instance keeping the provided number of slowest statements.
+     *
+     * @param slowestCount the number of slowest statements to keep
+     */
+    public StatementStatistics(int slowestCount) {
+        if (slowestCount < 0) {
+            throw new IllegalArgumentException("Statement count must not be negative: " + slowestCount);
+        }
+        this.slowestCount = slowestCount;
+        this.slowest = new PriorityQueue<Timing>(Math.max(1, slowestCount + 1), FASTEST_FIRST);
+    }
+
+    @Override
+    public void afterStatement(int index, StatementKind kind, String sql, long elapsedNanos, int updateCount) {
+        record(index, kind, sql, elapsedNanos);
+    }
+
+    @Override
+    public void statementFailed(int index, StatementKind kind, String sql, long elapsedNanos, SQLException error,
+            FailureHandling handling) {
+        record(index, kind, sql, elapsedNanos);
+    }
+
+    private synchronized void record(int index, StatementKind kind, String sql, long elapsedNanos) {
+        long[] total = totals.get(kind);
+        if (total == null) {
+            total = new long[2];
+            totals.put(kind, total);
+        }
+        total[0]++;
+        total[1] += elapsedNanos;
+        if (slowestCount > 0 && (slowest.size() < slowestCount || slowest.peek().elapsedNanos < elapsedNanos)) {
+            slowest.add(new Timing(index, kind, sql, elapsedNanos));
+            if (slowest.size() > slowestCount) {
+                slowest.poll();
+            }
+        }
+    }
+
+    /**
+     * Returns the slowest statements, the slowest first.
+     *
+     * @return the slowest statements
+     */
+    public synchronized List<Timing> getSlowest() {
+        List<Timing> result = new ArrayList<Timing>(slowest);
+        Collections.sort(result, Collections.reverseOrder(FASTEST_FIRST));
+        return result;
+    }
+
+    /**
+     * Returns the number of executed statements of the provided kind.
+     *
+     * @param kind the statement kind
+     * @return the statement count
+     */
+    public synchronized long getCount(StatementKind kind) {
+        long[] total = totals.get(kind);
+        return total != null ? total[0] : 0;
+    }
+
+    /**
+     * Returns the total execution time of the statements of the provided kind.
+     *
+     * @param kind the statement kind
+     * @return the total time in nanoseconds
+     */
+    public synchronized long getTotalNanos(StatementKind kind) {
+        long[] total = totals.get(kind);
+        return total != null ? total[1] : 0;
+    }
+
+    /**
+     * Returns the total execution time of all the statements.
+     *
+     * @return the total time in nanoseconds
+     */
+    public synchronized long getTotalNanos() {
+        long result = 0;
+        for (long[] total : totals.values()) {
+            result += total[1];
+        }
+        return result;
+    }
+
+    /**
+     * Returns a report of the total time per statement kind and of the slowest statements.
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append("Total: ").append(TimeUnit.NANOSECONDS.toMillis(getTotalNanos())).append(" ms");
+        for (Map.Entry<StatementKind, long[]> total : totals.entrySet()) {
+            report.append('\n').append(total.getKey()).append(": ").append(total.getValue()[0])
+                    .append(" statements, ").append(TimeUnit.NANOSECONDS.toMillis(total.getValue()[1])).append(" ms");
+        }
+        if (!slowest.isEmpty()) {
+            report.append("\nSlowest statements:");
+            for (Timing timing : getSlowest()) {
+                report.append('\n').append(timing);
+            }
+        }
+        return report.toString();
+    }
+}
@@ -43,11 +43,19 @@
  */
 package org.jahia.commons;
 
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-import java.util.StringTokenizer;
-import java.util.regex.Matcher;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.BiConsumer;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * This class represents a product version, and can be initialized by a String.
@@ -64,6 +72,9 @@ import java.util.regex.Pattern;
  * "B" and "RC" can be uppercase or minor case, the comparison is case insensitive
  * for the moment.
  * <p/>
+ * Instances are immutable and can be safely shared between threads. Use {@link #of(String)} to obtain a shared
+ * instance for frequently parsed version strings.
+ * <p/>
  * <p>Copyright: Copyright (c) 2002</p>
  * <p>Company: Jahia Inc.</p>
  *
@@ -73,21 +84,30 @@ import java.util.regex.Pattern;
 
 public class Version implements Comparable<Version> {
 
-    private static final Pattern VERSION_NUMBER_PATTERN = Pattern.compile("^([0-9\\.]*[0-9]+)(.*)");
-
     public static final String MAVEN_LATEST_VERSION = "LATEST";
     public static final String MAVEN_SNAPSHOT_VERSION = "SNAPSHOT";
     public static final Pattern MAVEN_VERSION_FILE_PATTERN = Pattern.compile("^(.*)-([0-9]{8}.[0-9]{6})-([0-9]+)$");
 
     public static final Pattern FILE_NAME_VERSION_PATTERN = Pattern.compile("^(.*?)-(([0-9\\.]*[0-9]+)(.*))?$");
 
-    private List<Integer> orderedVersionNumbers = new ArrayList<Integer>();
-    private int betaNumber = -1;
-    private int releaseCandidateNumber = -1;
+    private static final int[] NO_NUMBERS = new int[0];
+
+    private final int[] orderedVersionNumbers;
+    private final int betaNumber;
+    private final int releaseCandidateNumber;
     private String version;
-    private String versionPartSuffix;
-    private String updateMarker;
-    private List<String> qualifiers = new ArrayList<String>();
+    private final String versionPartSuffix;
+    private final String updateMarker;
+    private final List<String> qualifiers;
+
+    // comparison key: the number of version numbers without the trailing zeros and the state (beta, rc, final) rank
+    private final int normalizedLength;
+    private final long stateKey;
+    private final int hash;
+
+    // timestamp (in seconds since the epoch) and build number of a timestamped Maven snapshot, -1 otherwise
+    private final long snapshotTimestamp;
+    private final int snapshotBuildNumber;
 
     /**
      * Constructor. See class definition for syntax of the version string
@@ -98,85 +118,443 @@ public class Version implements Comparable<Version> {
      *                               containing the version.
      */
     public Version(final String versionString) throws NumberFormatException {
-        if (versionString == null) {
+        this(versionString, 0, checkedLength(versionString));
+    }
+
+    /**
+     * Constructor parsing the version from any character sequence, e.g. a {@link StringBuilder} or a
+     * {@link java.nio.CharBuffer}, without converting it to a String first.
+     *
+     * @param versionString the characters containing the version to analyze. See
+     *                      class description for more details.
+     * @throws NumberFormatException if there was a problem parsing the characters
+     *                               containing the version.
+     */
+    public Version(final CharSequence versionString) throws NumberFormatException {
+        this(versionString, 0, checkedLength(versionString));
+    }
+
+    /**
+     * Constructor parsing the version from a slice of ASCII (or ISO-8859-1) encoded bytes, e.g. read from a
+     * MANIFEST.MF file, without decoding them into a String first.
+     *
+     * @param bytes  the bytes containing the version to analyze. See
+     *               class description for more details.
+     * @param offset the index of the first byte of the version
+     * @param length the number of bytes of the version
+     * @throws NumberFormatException if there was a problem parsing the bytes
+     *                               containing the version.
+     */
+    public Version(byte[] bytes, int offset, int length) throws NumberFormatException {
+        this(AsciiCharSequence.of(bytes, offset, length), 0, length);
+    }
+
+    /**
+     * Constructor parsing the version from a range of characters, e.g. a part of a path, without extracting it as a
+     * String first.
+     *
+     * @param chars the characters containing the version to analyze. See
+     *              class description for more details.
+     * @param start the index of the first character of the version
+     * @param end   the index after the last character of the version
+     * @throws NumberFormatException if there was a problem parsing the characters
+     *                               containing the version.
+     */
+    public Version(final CharSequence chars, int start, int end) throws NumberFormatException {
+        if (chars == null) {
             throw new NumberFormatException("Null string passed as version !");
         }
-        if (versionString.length() == 0) {
+        Objects.checkFromToIndex(start, end, chars.length());
+        if (start == end) {
             throw new NumberFormatException("Empty string passed as version !");
         }
-        String trimmedVersionString = versionString.trim();
-        String versionPart = null;
-        String numberedVersionPart = null;
-        StringTokenizer tokenizer = new StringTokenizer(trimmedVersionString, "-");
-        versionPart = tokenizer.nextToken();
-        while (tokenizer.hasMoreTokens()) {
-            qualifiers.add(tokenizer.nextToken());
-        }
-        Matcher versionPartMatcher = VERSION_NUMBER_PATTERN.matcher(versionPart);
-        if (!versionPartMatcher.matches()) {
-            qualifiers.add(0, versionPart);
-            versionPart = null;
-        } else {
-            numberedVersionPart = versionPartMatcher.group(1);
-            versionPartSuffix = versionPartMatcher.group(2);
+        // the version string is parsed in a single pass over its characters, without regular expressions or
+        // intermediate substrings: the first dash-separated token is the version part, the other non-empty tokens are
+        // qualifiers
+        final CharSequence s = chars;
+        int pos = start;
+        while (pos < end && s.charAt(pos) <= ' ') {
+            pos++;
+        }
+        while (end > pos && s.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        // skip leading dashes to reach the first non-empty token, which is the version part
+        while (pos < end && s.charAt(pos) == '-') {
+            pos++;
+        }
+        if (pos == end) {
+            throw new NumberFormatException("No version found in string '" + s.subSequence(start, end) + "' !");
+        }
+        int partStart = pos;
+        while (pos < end && s.charAt(pos) != '-') {
+            pos++;
+        }
+        int partEnd = pos;
+        List<String> parsedQualifiers = null;
+        while (pos < end) {
+            if (s.charAt(pos) == '-') {
+                pos++;
+                continue;
+            }
+            int qualifierStart = pos;
+            while (pos < end && s.charAt(pos) != '-') {
+                pos++;
+            }
+            if (parsedQualifiers == null) {
+                parsedQualifiers = new ArrayList<String>(4);
+            }
+            parsedQualifiers.add(substring(s, qualifierStart, pos));
         }
 
-        if (versionPart != null) {
-            versionPart = versionPart.toLowerCase();
-            int betaPos = versionPart.indexOf("b");
-            int rcPos = versionPart.indexOf("rc");
+        // the numbered part is the longest run of digits and dots at the start of the version part ending with a digit
+        int numbersEnd = -1;
+        for (int i = partStart; i < partEnd; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                numbersEnd = i + 1;
+            } else if (c != '.') {
+                break;
+            }
+        }
+
+        int[] numbers = NO_NUMBERS;
+        int beta = -1;
+        int releaseCandidate = -1;
+        String suffix = null;
+        String update = null;
+        if (numbersEnd != -1 && !containsLineTerminator(s, numbersEnd, partEnd)) {
+            numbers = parseVersionNumbers(s, partStart, numbersEnd);
+            suffix = substring(s, numbersEnd, partEnd);
 
+            int restEnd = partEnd;
+            int betaPos = indexOfIgnoreCase(s, 'b', numbersEnd, partEnd);
             if (betaPos != -1) {
-                String betaString = versionPart.substring(betaPos + 1).trim();
-                String rest = versionPart.substring(0, betaPos);
-                try {
-                    betaNumber = Integer.parseInt(betaString);
-                    versionPart = rest;
-                    versionPartSuffix = null;
-                } catch (NumberFormatException e) {
-                    // does not seem like a beta number: we will consider this part as suffix
+                beta = parseMarkerNumber(s, betaPos + 1, partEnd);
+                if (beta != -1) {
+                    restEnd = betaPos;
+                    suffix = null;
                 }
-            } else if (rcPos != -1) {
-                String rcString = versionPart.substring(rcPos + 2).trim();
-                String rest = versionPart.substring(0, rcPos);
-                try {
-                    releaseCandidateNumber = Integer.parseInt(rcString);
-                    versionPart = rest;
-                    versionPartSuffix = null;
-                } catch (NumberFormatException e) {
-                    // does not seem like an RC number: we will consider this part as suffix
+                // otherwise it does not seem like a beta number: we will consider this part as suffix
+            } else {
+                int rcPos = indexOfReleaseCandidate(s, numbersEnd, partEnd);
+                if (rcPos != -1) {
+                    releaseCandidate = parseMarkerNumber(s, rcPos + 2, partEnd);
+                    if (releaseCandidate != -1) {
+                        restEnd = rcPos;
+                        suffix = null;
+                    }
+                    // otherwise it does not seem like an RC number: we will consider this part as suffix
                 }
             }
 
-            int underscorePos = versionPart.indexOf("_");
-            if (underscorePos != -1) {
-                updateMarker = versionPart.substring(underscorePos + 1).trim();
-                versionPart = versionPart.substring(0, underscorePos).trim();
-                versionPartSuffix = null;
+            for (int i = numbersEnd; i < restEnd; i++) {
+                if (s.charAt(i) == '_') {
+                    update = substring(s, i + 1, restEnd).trim().toLowerCase();
+                    suffix = null;
+                    break;
+                }
             }
+        } else {
+            // no numbered version part: it is considered as the first qualifier
+            if (parsedQualifiers == null) {
+                parsedQualifiers = new ArrayList<String>(1);
+            }
+            parsedQualifiers.add(0, substring(s, partStart, partEnd));
+        }
+
+        orderedVersionNumbers = numbers;
+        betaNumber = beta;
+        releaseCandidateNumber = releaseCandidate;
+        versionPartSuffix = suffix;
+        updateMarker = update;
+        qualifiers = parsedQualifiers != null ? Collections.unmodifiableList(parsedQualifiers)
+                : Collections.<String>emptyList();
+
+        normalizedLength = normalizedLength(numbers);
+        stateKey = stateKey(beta, releaseCandidate);
+        snapshotTimestamp = parseSnapshotTimestamp(qualifiers);
+        snapshotBuildNumber = snapshotTimestamp != -1 ? parseSnapshotBuildNumber(qualifiers) : -1;
+        hash = computeHashCode();
+    }
+
+    /**
+     * Initializes an instance of this class from already parsed parts, used when decoding binary representations.
+     */
+    Version(int[] orderedVersionNumbers, int betaNumber, int releaseCandidateNumber, String versionPartSuffix,
+            String updateMarker, List<String> qualifiers) {
+        this.orderedVersionNumbers = orderedVersionNumbers.length > 0 ? orderedVersionNumbers : NO_NUMBERS;
+        this.betaNumber = betaNumber;
+        this.releaseCandidateNumber = releaseCandidateNumber;
+        this.versionPartSuffix = versionPartSuffix;
+        this.updateMarker = updateMarker;
+        this.qualifiers = qualifiers.isEmpty() ? Collections.<String>emptyList()
+                : Collections.unmodifiableList(qualifiers);
+        normalizedLength = normalizedLength(orderedVersionNumbers);
+        stateKey = stateKey(betaNumber, releaseCandidateNumber);
+        snapshotTimestamp = parseSnapshotTimestamp(this.qualifiers);
+        snapshotBuildNumber = snapshotTimestamp != -1 ? parseSnapshotBuildNumber(this.qualifiers) : -1;
+        hash = computeHashCode();
+    }
+
+    private static int normalizedLength(int[] numbers) {
+        int length = numbers.length;
+        while (length > 0 && numbers[length - 1] == 0) {
+            length--;
+        }
+        return length;
+    }
+
+    private static long stateKey(int betaNumber, int releaseCandidateNumber) {
+        return betaNumber != -1 ? betaNumber : releaseCandidateNumber != -1 ? (1L << 32) | releaseCandidateNumber : 2L << 32;
+    }
+
+    /**
+     * Parses the timestamp of a Maven snapshot build, found in the two last qualifiers as in
+     * <code>4.0-20130129.191029-6</code>.
+     *
+     * @return the timestamp in seconds since the epoch (UTC) or -1 if the qualifiers do not end with a timestamp and a
+     *         build number
+     */
+    private static long parseSnapshotTimestamp(List<String> qualifiers) {
+        int count = qualifiers.size();
+        if (count < 2 || parseSnapshotBuildNumber(qualifiers) == -1) {
+            return -1;
+        }
+        // yyyyMMdd.HHmmss
+        String timestamp = qualifiers.get(count - 2);
+        if (timestamp.length() != 15 || timestamp.charAt(8) != '.') {
+            return -1;
+        }
+        int year = parseDigits(timestamp, 0, 4);
+        int month = parseDigits(timestamp, 4, 6);
+        int day = parseDigits(timestamp, 6, 8);
+        int hour = parseDigits(timestamp, 9, 11);
+        int minute = parseDigits(timestamp, 11, 13);
+        int second = parseDigits(timestamp, 13, 15);
+        if (year < 1970 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month) || hour < 0
+                || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return -1;
+        }
+        return daysSinceEpoch(year, month, day) * 86400L + hour * 3600 + minute * 60 + second;
+    }
+
+    private static int parseSnapshotBuildNumber(List<String> qualifiers) {
+        String buildNumber = qualifiers.get(qualifiers.size() - 1);
+        return buildNumber.length() > 0 && buildNumber.length() <= 9 ? parseDigits(buildNumber, 0, buildNumber.length())
+                : -1;
+    }
+
+    private static int parseDigits(String s, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2) {
+            return year % 4 == 0 && (year % 100 != 0 || year % 400 == 0) ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    /**
+     * Computes the number of days since 1970-01-01 of a date of the proleptic Gregorian calendar, without allocating
+     * any temporal object.
+     */
+    private static long daysSinceEpoch(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = y / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    /**
+     * Returns a shared instance of the version for the specified string. The instances are taken from a size-bounded
+     * cache (see {@link VersionCache}), which makes this method preferable over the constructor for version strings
+     * that are parsed over and over.
+     *
+     * @param versionString the String containing the version to analyze. See
+     *                      class description for more details.
+     * @return a shared instance of the version
+     * @throws NumberFormatException if there was a problem parsing the string
+     *                               containing the version.
+     */
+    public static Version of(String versionString) throws NumberFormatException {
+        if (versionString == null) {
+            throw new NumberFormatException("Null string passed as version !");
+        }
+        return VersionCache.get(versionString);
+    }
+
+    /**
+     * Parses the provided version strings, in parallel on the common fork-join pool for large collections. Strings
+     * which are not valid versions do not stop the parsing: they are passed with their exception to the error handler,
+     * in the order of the collection, once all strings are parsed.
+     *
+     * @param versionStrings the strings to parse
+     * @param errorHandler   receives the invalid strings and their parse exception, can be null to ignore them
+     * @return the parsed versions in the order of the collection
+     */
+    public static List<Version> parseAll(Collection<String> versionStrings,
+            BiConsumer<String, NumberFormatException> errorHandler) {
+        return VersionBatch.parseAll(versionStrings, errorHandler);
+    }
 
-            StringTokenizer versionTokenizer = new StringTokenizer(numberedVersionPart, ".");
-            while (versionTokenizer.hasMoreTokens()) {
-                String curToken = versionTokenizer.nextToken().trim();
-                try {
-                    int curVersionNumber = Integer.parseInt(curToken);
-                    orderedVersionNumbers.add(new Integer(curVersionNumber));
-                } catch (NumberFormatException nfe) {
-                    // we're out of numbers, this is not a string anymore. Normally this is not possible since we used
-                    // a regexp to match only numbers
+    /**
+     * Parses the version strings of the provided stream, which is fully consumed before parsing. See
+     * {@link #parseAll(Collection, BiConsumer)}.
+     *
+     * @param versionStrings the strings to parse
+     * @param errorHandler   receives the invalid strings and their parse exception, can be null to ignore them
+     * @return the parsed versions in the order of the stream
+     */
+    public static List<Version> parseAll(Stream<String> versionStrings,
+            BiConsumer<String, NumberFormatException> errorHandler) {
+        return VersionBatch.parseAll(versionStrings.collect(Collectors.<String>toList()), errorHandler);
+    }
+
+    /**
+     * Parses the provided version strings and sorts the versions in ascending order, both in parallel on the common
+     * fork-join pool for large collections. Versions comparing as equal keep their order in the collection. Invalid
+     * strings are reported as in {@link #parseAll(Collection, BiConsumer)}.
+     *
+     * @param versionStrings the strings to parse
+     * @param errorHandler   receives the invalid strings and their parse exception, can be null to ignore them
+     * @return the parsed versions in ascending order
+     */
+    public static List<Version> sortVersions(Collection<String> versionStrings,
+            BiConsumer<String, NumberFormatException> errorHandler) {
+        return VersionBatch.sortVersions(versionStrings, errorHandler);
+    }
+
+    private static int checkedLength(CharSequence versionString) {
+        if (versionString == null) {
+            throw new NumberFormatException("Null string passed as version !");
+        }
+        return versionString.length();
+    }
+
+    private static String substring(CharSequence s, int start, int end) {
+        if (s instanceof String) {
+            return ((String) s).substring(start, end);
+        }
+        return s.subSequence(start, end).toString();
+    }
+
+    /**
+     * Parses the dot-separated numbers of the version part. Empty tokens are skipped, as well as tokens that do not fit
+     * into an int.
+     */
+    private static int[] parseVersionNumbers(CharSequence s, int start, int end) {
+        // a run of n characters contains at most (n + 1) / 2 numbers
+        int[] numbers = new int[(end - start + 1) / 2];
+        int count = 0;
+        int pos = start;
+        while (pos < end) {
+            if (s.charAt(pos) == '.') {
+                pos++;
+                continue;
+            }
+            long value = 0;
+            boolean overflow = false;
+            while (pos < end && s.charAt(pos) != '.') {
+                value = value * 10 + (s.charAt(pos) - '0');
+                if (value > Integer.MAX_VALUE) {
+                    overflow = true;
+                    value = 0;
                 }
+                pos++;
+            }
+            if (!overflow) {
+                numbers[count++] = (int) value;
+            }
+        }
+        if (count == 0) {
+            return NO_NUMBERS;
+        }
+        return count == numbers.length ? numbers : Arrays.copyOf(numbers, count);
+    }
+
+    /**
+     * Parses the beta or release candidate number, which spans until the end of the version part, following the rules
+     * of {@link Integer#parseInt(String)} applied to the trimmed string.
+     *
+     * @return the parsed number or -1 if the characters do not represent a number
+     */
+    private static int parseMarkerNumber(CharSequence s, int start, int end) {
+        while (start < end && s.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && s.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (start < end && s.charAt(start) == '+') {
+            start++;
+        }
+        if (start == end) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = Character.digit(s.charAt(i), 10);
+            if (digit < 0 || value > (Integer.MAX_VALUE - digit) / 10) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static int indexOfIgnoreCase(CharSequence s, char lowerCaseChar, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (Character.toLowerCase(s.charAt(i)) == lowerCaseChar) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOfReleaseCandidate(CharSequence s, int start, int end) {
+        for (int i = start; i < end - 1; i++) {
+            if (Character.toLowerCase(s.charAt(i)) == 'r' && Character.toLowerCase(s.charAt(i + 1)) == 'c') {
+                return i;
             }
         }
+        return -1;
+    }
+
+    private static boolean containsLineTerminator(CharSequence s, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return true;
+            }
+        }
+        return false;
     }
 
     String getBaseVersionString() {
-        StringBuffer baseVersionBuf = new StringBuffer();
-        for (Integer orderedVersionNumber : orderedVersionNumbers) {
-            baseVersionBuf.append(orderedVersionNumber);
-            baseVersionBuf.append(".");
+        StringBuilder baseVersionBuf = new StringBuilder();
+        appendVersionNumbers(baseVersionBuf);
+        return baseVersionBuf.toString();
+    }
+
+    private void appendVersionNumbers(StringBuilder buf) {
+        for (int i = 0; i < orderedVersionNumbers.length; i++) {
+            if (i > 0) {
+                buf.append('.');
+            }
+            buf.append(orderedVersionNumbers[i]);
         }
-        String baseVersionString = baseVersionBuf.toString();
-        return baseVersionString.substring(0, baseVersionString.length() -1);
     }
 
     /**
@@ -235,13 +613,7 @@ public class Version implements Comparable<Version> {
     public String toString() {
         if (version == null) {
             StringBuilder result = new StringBuilder();
-            for (int i = 0; i < orderedVersionNumbers.size(); i++) {
-                Integer curVersionNumber = (Integer) orderedVersionNumbers.get(i);
-                result.append(curVersionNumber.intValue());
-                if (i < (orderedVersionNumbers.size() - 1)) {
-                    result.append(".");
-                }
-            }
+            appendVersionNumbers(result);
             if (versionPartSuffix != null) {
                 result.append(versionPartSuffix);
             }
@@ -272,15 +644,22 @@ public class Version implements Comparable<Version> {
      * allows this class to be sorted by version number.
      * <p/>
      * ComparisonImpl is done the following way :
-     * 1. compares the version number until there is no more to compare
+     * 1. compares the version number until there is no more to compare, missing numbers being considered as zeros
      * 2. compares the "state" (beta, release candidate, final)
+     * 3. compares the timestamp and build number of Maven snapshot builds, versions without them being higher
+     * <p/>
+     * The update marker and the other qualifiers are not considered. The comparison relies on a key computed at construction
+     * and does not allocate any object.
      * <p/>
      * Examples :
      * 4.0, 4.0.1 returns -1
+     * 4.0, 4.0.0 returns 0
      * 4.0B1, 4.0.1B1 returns -1
      * 4.1.0, 4.0.1 returns 1
      * 4.0.0, 4.0.0 return 0
      * 4.0.1B1, 4.0.1RC2 returns -1
+     * 4.0-20130129.191029-6, 4.0-20130130.080000-7 returns -1
+     * 4.0-20130129.191029-6, 4.0-SNAPSHOT returns -1
      * ...
      *
      * @param o a Version object to compare to. If this is not a Version class
@@ -292,81 +671,31 @@ public class Version implements Comparable<Version> {
      */
     @Override
     public int compareTo(Version o) {
-        Version rightVersion = (Version) o;
-        List<Integer> rightOrderedVersionNumbers = rightVersion.getOrderedVersionNumbers();
-
-        if (this.equals(rightVersion)) {
+        if (this == o) {
             return 0;
         }
-
-        if (orderedVersionNumbers.size() == rightOrderedVersionNumbers.size()) {
-            for (int i = 0; i < orderedVersionNumbers.size(); i++) {
-                Integer versionNumber = orderedVersionNumbers.get(i);
-                Integer rightVersionNumber = rightOrderedVersionNumbers.get(i);
-                if (versionNumber.intValue() != rightVersionNumber.intValue()) {
-                    return versionNumber.compareTo(rightVersionNumber);
-                }
+        // missing numbers are considered as zeros, so that 1.5 is equal to 1.5.0.0
+        int length = Math.max(normalizedLength, o.normalizedLength);
+        for (int i = 0; i < length; i++) {
+            int versionNumber = getVersionNumber(i);
+            int rightVersionNumber = o.getVersionNumber(i);
+            if (versionNumber != rightVersionNumber) {
+                return versionNumber < rightVersionNumber ? -1 : 1;
             }
-            // now we must compare beta numbers, release candidate number and regular versions
-            // to determine which is higher.
-            if (isBeta() && rightVersion.isBeta()) {
-                if (betaNumber < rightVersion.getBetaNumber()) {
-                    return -1;
-                } else {
-                    return 1;
-                }
-            }
-
-            if (isReleaseCandidate() && rightVersion.isReleaseCandidate()) {
-                if (releaseCandidateNumber < rightVersion.getReleaseCandidateNumber()) {
-                    return -1;
-                } else {
-                    return 1;
-                }
-            }
-
-            if (isBeta() && rightVersion.isReleaseCandidate()) {
-                return -1;
-            }
-            if (isBeta() && rightVersion.isFinal()) {
-                return -1;
-            }
-            if (isReleaseCandidate() && rightVersion.isBeta()) {
-                return 1;
-            }
-            if (isReleaseCandidate() && rightVersion.isFinal()) {
-                return -1;
-            }
-            if (isFinal() && rightVersion.isBeta()) {
-                return 1;
-            }
-            if (isFinal() && rightVersion.isReleaseCandidate()) {
-                return 1;
-            }
-
-            return 0;
-
-        } else if (orderedVersionNumbers.size() < rightOrderedVersionNumbers.size()) {
-            // this version has less numbers that the right one.
-            for (int i = 0; i < orderedVersionNumbers.size(); i++) {
-                Integer versionNumber = (Integer) orderedVersionNumbers.get(i);
-                Integer rightVersionNumber = (Integer) rightOrderedVersionNumbers.get(i);
-                if (versionNumber.intValue() != rightVersionNumber.intValue()) {
-                    return versionNumber.compareTo(rightVersionNumber);
-                }
-            }
-            return -1;
-        } else {
-            // the right version has less number than this one.
-            for (int i = 0; i < rightOrderedVersionNumbers.size(); i++) {
-                Integer versionNumber = (Integer) orderedVersionNumbers.get(i);
-                Integer rightVersionNumber = (Integer) rightOrderedVersionNumbers.get(i);
-                if (versionNumber.intValue() != rightVersionNumber.intValue()) {
-                    return versionNumber.compareTo(rightVersionNumber);
-                }
+        }
+        // now we must compare beta numbers, release candidate number and regular versions
+        // to determine which is higher.
+        if (stateKey != o.stateKey) {
+            return stateKey < o.stateKey ? -1 : 1;
+        }
+        // timestamped snapshot builds are ordered by timestamp and build number, and are lower than the other versions
+        if (snapshotTimestamp != o.snapshotTimestamp) {
+            if (snapshotTimestamp == -1 || o.snapshotTimestamp == -1) {
+                return snapshotTimestamp == -1 ? 1 : -1;
             }
-            return 1;
+            return snapshotTimestamp < o.snapshotTimestamp ? -1 : 1;
         }
+        return Integer.compare(snapshotBuildNumber, o.snapshotBuildNumber);
     }
 
     /**
@@ -374,11 +703,11 @@ public class Version implements Comparable<Version> {
      * index 0 is the major version number, index 1 is the minor, etc... This
      * method does not return beta or release candidate versions.
      *
-     * @return an List containing Integers that represent the version
+     * @return a read-only List containing Integers that represent the version
      *         number. The ordered of these are significant
      */
     public List<Integer> getOrderedVersionNumbers() {
-        return orderedVersionNumbers;
+        return new VersionNumberList(orderedVersionNumbers);
     }
 
     /**
@@ -401,6 +730,34 @@ public class Version implements Comparable<Version> {
         return releaseCandidateNumber;
     }
 
+    /**
+     * Returns true if the version is a timestamped Maven snapshot build, such as <code>4.0-20130129.191029-6</code>.
+     *
+     * @return true if the version has a snapshot timestamp and build number
+     */
+    public boolean isTimestampedSnapshot() {
+        return snapshotTimestamp != -1;
+    }
+
+    /**
+     * Returns the timestamp of a Maven snapshot build, e.g. <code>20130129.191029</code> in
+     * <code>4.0-20130129.191029-6</code>, as the number of seconds since the epoch (UTC).
+     *
+     * @return the snapshot timestamp in seconds or -1 if the version is not a timestamped snapshot
+     */
+    public long getSnapshotTimestamp() {
+        return snapshotTimestamp;
+    }
+
+    /**
+     * Returns the build number of a Maven snapshot build, e.g. <code>6</code> in <code>4.0-20130129.191029-6</code>.
+     *
+     * @return the snapshot build number or -1 if the version is not a timestamped snapshot
+     */
+    public int getSnapshotBuildNumber() {
+        return snapshotBuildNumber;
+    }
+
     /**
      * Returns the update marker string, located after the underscore. This is usually a numeric value but we support
      * String values
@@ -414,7 +771,7 @@ public class Version implements Comparable<Version> {
     /**
      * Return the list of qualifiers if there were any specified.
      *
-     * @return
+     * @return a read-only list of qualifiers, which is empty if there were none
      */
     public List<String> getQualifiers() {
         return qualifiers;
@@ -426,48 +783,30 @@ public class Version implements Comparable<Version> {
 
         if (obj != null && this.getClass() == obj.getClass()) {
             Version rightVersion = (Version) obj;
-            // first we create copies of the version number lists to be able to normalize them if necessary.
-            List<Integer> normalizedOrderedVersionNumbers = new ArrayList<Integer>(orderedVersionNumbers);
-            List<Integer> normalizedRightOrderedVersionNumbers = new ArrayList<Integer>(rightVersion.getOrderedVersionNumbers());
-            // version numbers might not have same length, we must first normalize the length to compare them since
+            if (hash != rightVersion.hash || stateKey != rightVersion.stateKey
+                    || normalizedLength != rightVersion.normalizedLength) {
+                return false;
+            }
+            // version numbers might not have same length, but we compare them without the trailing zeros since
             // 1.5 is equal to 1.5.0.0
-            if (normalizedOrderedVersionNumbers.size() < normalizedRightOrderedVersionNumbers.size()) {
-                int sizeDiff = normalizedRightOrderedVersionNumbers.size() - normalizedOrderedVersionNumbers.size();
-                for (int i = 0; i < sizeDiff; i++) {
-                    normalizedOrderedVersionNumbers.add(0);
-                }
-            } else if (normalizedOrderedVersionNumbers.size() > normalizedRightOrderedVersionNumbers.size()) {
-                int sizeDiff = normalizedOrderedVersionNumbers.size() - normalizedRightOrderedVersionNumbers.size();
-                for (int i = 0; i < sizeDiff; i++) {
-                    normalizedRightOrderedVersionNumbers.add(0);
+            for (int i = 0; i < normalizedLength; i++) {
+                if (orderedVersionNumbers[i] != rightVersion.orderedVersionNumbers[i]) {
+                    return false;
                 }
             }
-            if (betaNumber != rightVersion.getBetaNumber()) {
+            if (updateMarker == null ? rightVersion.updateMarker != null
+                    : !updateMarker.equals(rightVersion.updateMarker)) {
                 return false;
             }
-            if (releaseCandidateNumber != rightVersion.getReleaseCandidateNumber()) {
+            int qualifierCount = qualifiers.size();
+            if (qualifierCount != rightVersion.qualifiers.size()) {
                 return false;
             }
-            for (int i = 0; i < normalizedOrderedVersionNumbers.size(); i++) {
-                Integer leftVersionNumber = normalizedOrderedVersionNumbers.get(i);
-                Integer rightVersionNumber = normalizedRightOrderedVersionNumbers.get(i);
-                if (leftVersionNumber.intValue() != rightVersionNumber.intValue()) {
+            for (int i = 0; i < qualifierCount; i++) {
+                if (!qualifiers.get(i).equals(rightVersion.qualifiers.get(i))) {
                     return false;
                 }
             }
-            if ((updateMarker != null) && (rightVersion.getUpdateMarker() != null)) {
-                if (!updateMarker.equals(rightVersion.getUpdateMarker())) {
-                    return false;
-                }
-            } else {
-                if ((updateMarker == null) && (rightVersion.getUpdateMarker() == null)) {
-                } else {
-                    return false;
-                }
-            }
-            if (!qualifiers.equals(rightVersion.getQualifiers())) {
-                return false;
-            }
             // if we got here it means the version are equal.
             return true;
         } else {
@@ -475,17 +814,34 @@ public class Version implements Comparable<Version> {
         }
     }
 
+    /**
+     * Returns the hash code of this version, computed once at construction consistently with
+     * {@link #equals(Object)}: trailing zeros of the version number are not considered.
+     *
+     * @return the hash code of this version
+     */
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    private int computeHashCode() {
+        int result = 1;
+        for (int i = 0; i < normalizedLength; i++) {
+            result = 31 * result + orderedVersionNumbers[i];
+        }
+        result = 31 * result + (int) (stateKey ^ (stateKey >>> 32));
+        result = 31 * result + (updateMarker != null ? updateMarker.hashCode() : 0);
+        return 31 * result + qualifiers.hashCode();
+    }
+
     /**
      * Returns the major version number, which is the first number in a X.X.X.X format or 0 if there is no first number
      *
      * @return
      */
     public int getMajorVersion() {
-        if (orderedVersionNumbers.size() > 0) {
-            return orderedVersionNumbers.get(0);
-        } else {
-            return 0;
-        }
+        return getVersionNumber(0);
     }
 
     /**
@@ -494,11 +850,7 @@ public class Version implements Comparable<Version> {
      * @return
      */
     public int getMinorVersion() {
-        if (orderedVersionNumbers.size() > 1) {
-            return orderedVersionNumbers.get(1);
-        } else {
-            return 0;
-        }
+        return getVersionNumber(1);
     }
 
     /**
@@ -507,11 +859,7 @@ public class Version implements Comparable<Version> {
      * @return
      */
     public int getServicePackVersion() {
-        if (orderedVersionNumbers.size() > 2) {
-            return orderedVersionNumbers.get(2);
-        } else {
-            return 0;
-        }
+        return getVersionNumber(2);
     }
 
     /**
@@ -520,18 +868,205 @@ public class Version implements Comparable<Version> {
      * @return
      */
     public int getPatchVersion() {
-        if (orderedVersionNumbers.size() > 3) {
-            return orderedVersionNumbers.get(3);
-        } else {
-            return 0;
-        }
+        return getVersionNumber(3);
+    }
+
+    /**
+     * Returns the version number at the specified index or 0 if there is no such number.
+     */
+    int getVersionNumber(int index) {
+        return index < orderedVersionNumbers.length ? orderedVersionNumbers[index] : 0;
     }
 
-    public static Version fromMavenFileName(String fileNameWithoutExtension) {
-        Matcher fileNameMatcher = FILE_NAME_VERSION_PATTERN.matcher(fileNameWithoutExtension);
-        if (fileNameMatcher.matches()) {
-            return new Version(fileNameMatcher.group(2));
+    /**
+     * Returns the number of version numbers, including the trailing zeros.
+     */
+    int getVersionNumberCount() {
+        return orderedVersionNumbers.length;
+    }
+
+    /**
+     * Returns the number of version numbers without the trailing zeros, which are not significant for comparison.
+     *
+     * @return the number of significant version numbers
+     */
+    int getNormalizedLength() {
+        return normalizedLength;
+    }
+
+    /**
+     * Returns a binary key of this version, whose unsigned lexicographic order is the order defined by
+     * {@link #compareTo(Version)}, e.g. to be stored in database indexes or sorted key-value stores. Versions comparing
+     * as equal have keys starting with the same bytes and ordered by update marker and qualifiers. The original version
+     * can be restored using {@link #fromSortKey(byte[])}.
+     *
+     * @return the binary sort key of this version
+     */
+    public byte[] toSortKey() {
+        return VersionSortKey.encode(this);
+    }
+
+    /**
+     * Returns a non-negative numeric sort key of this version, whose natural order is the order defined by
+     * {@link #compareTo(Version)}, if all its components fit: at most 4 significant version numbers, the first two
+     * lower than 16384, the other ones lower than 4096, beta or release candidate number lower than 512, and not a
+     * timestamped snapshot. Versions comparing as equal have the same key.
+     *
+     * @return the numeric sort key of this version or -1 if the version does not fit
+     */
+    public long toLongSortKey() {
+        return VersionSortKey.encodeLong(this);
+    }
+
+    /**
+     * Restores a version from the key returned by {@link #toSortKey()}.
+     *
+     * @param sortKey the binary sort key
+     * @return the decoded version
+     * @throws IllegalArgumentException if the key is not a valid version sort key
+     */
+    public static Version fromSortKey(byte[] sortKey) throws IllegalArgumentException {
+        return VersionSortKey.decode(sortKey);
+    }
+
+    /**
+     * Extracts the version from a Maven artifact file name, e.g. <code>2.4.2-rev1346887-patch9</code> from
+     * <code>jackrabbit-api-2.4.2-rev1346887-patch9</code>. The version starts after the first dash followed by a
+     * number, as matched by {@link #FILE_NAME_VERSION_PATTERN}.
+     *
+     * @param fileNameWithoutExtension the file name without its extension
+     * @return the version or null if the file name does not contain any
+     * @throws NumberFormatException if the file name ends with a dash
+     */
+    public static Version fromMavenFileName(String fileNameWithoutExtension) throws NumberFormatException {
+        return fromMavenFileName(fileNameWithoutExtension, 0, fileNameWithoutExtension.length());
+    }
+
+    /**
+     * Extracts the version from a Maven artifact file name, see {@link #fromMavenFileName(String)}.
+     *
+     * @param fileNameWithoutExtension the file name without its extension
+     * @return the version or null if the file name does not contain any
+     * @throws NumberFormatException if the file name ends with a dash
+     */
+    public static Version fromMavenFileName(CharSequence fileNameWithoutExtension) throws NumberFormatException {
+        return fromMavenFileName(fileNameWithoutExtension, 0, fileNameWithoutExtension.length());
+    }
+
+    /**
+     * Extracts the version from a slice of ASCII (or ISO-8859-1) encoded bytes containing a Maven artifact file name,
+     * see {@link #fromMavenFileName(String)}.
+     *
+     * @param bytes  the bytes containing the file name
+     * @param offset the index of the first byte of the file name
+     * @param length the number of bytes of the file name, without its extension
+     * @return the version or null if the file name does not contain any
+     * @throws NumberFormatException if the file name ends with a dash
+     */
+    public static Version fromMavenFileName(byte[] bytes, int offset, int length) throws NumberFormatException {
+        return fromMavenFileName(AsciiCharSequence.of(bytes, offset, length), 0, length);
+    }
+
+    /**
+     * Extracts the version from a range of characters containing a Maven artifact file name, e.g. the last segment of a
+     * path, see {@link #fromMavenFileName(String)}.
+     *
+     * @param chars the characters containing the file name
+     * @param start the index of the first character of the file name
+     * @param end   the index after the last character of the file name, without its extension
+     * @return the version or null if the file name does not contain any
+     * @throws NumberFormatException if the file name ends with a dash
+     */
+    public static Version fromMavenFileName(CharSequence chars, int start, int end) throws NumberFormatException {
+        Objects.checkFromToIndex(start, end, chars.length());
+        // same as matching FILE_NAME_VERSION_PATTERN: the version starts after the first dash followed by a run of
+        // digits and dots containing a digit, and the name must not contain any line terminator
+        if (containsLineTerminator(chars, start, end)) {
+            return null;
+        }
+        for (int dash = start; dash < end; dash++) {
+            if (chars.charAt(dash) != '-') {
+                continue;
+            }
+            if (dash == end - 1) {
+                throw new NumberFormatException("Null string passed as version !");
+            }
+            for (int i = dash + 1; i < end; i++) {
+                char c = chars.charAt(i);
+                if (c >= '0' && c <= '9') {
+                    return new Version(chars, dash + 1, end);
+                } else if (c != '.') {
+                    break;
+                }
+            }
         }
         return null;
     }
+
+    /**
+     * Read-only view on a slice of ASCII (or ISO-8859-1) encoded bytes, used to parse them without decoding.
+     */
+    private static final class AsciiCharSequence implements CharSequence {
+
+        private final byte[] bytes;
+        private final int offset;
+        private final int length;
+
+        static AsciiCharSequence of(byte[] bytes, int offset, int length) {
+            if (bytes == null) {
+                throw new NumberFormatException("Null bytes passed as version !");
+            }
+            Objects.checkFromIndexSize(offset, length, bytes.length);
+            return new AsciiCharSequence(bytes, offset, length);
+        }
+
+        private AsciiCharSequence(byte[] bytes, int offset, int length) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (bytes[offset + index] & 0xFF);
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            Objects.checkFromToIndex(start, end, length);
+            return new AsciiCharSequence(bytes, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    /**
+     * Read-only list view on the version numbers.
+     */
+    private static final class VersionNumberList extends AbstractList<Integer> implements RandomAccess {
+
+        private final int[] numbers;
+
+        VersionNumberList(int[] numbers) {
+            this.numbers = numbers;
+        }
+
+        @Override
+        public Integer get(int index) {
+            return numbers[index];
+        }
+
+        @Override
+        public int size() {
+            return numbers.length;
+        }
+    }
 }
\ No newline at end of file
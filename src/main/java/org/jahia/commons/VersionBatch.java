@@ -0,0 +1,186 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.commons;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiConsumer;
+
+/**
+ * Bulk parsing and sorting of version strings, splitting the work on the common fork-join pool.
+ *
+ * @author Jahia Solutions Group SA
+ * @see Version#parseAll(Collection, BiConsumer)
+ * @see Version#sortVersions(Collection, BiConsumer)
+ */
+final class VersionBatch {
+
+    /**
+     * Number of strings parsed by a single task.
+     */
+    private static final int CHUNK_SIZE = 1024;
+
+    /**
+     * Orders sort entries by their numeric key, when both have one, or by {@link Version#compareTo(Version)}.
+     */
+    private static final Comparator<SortEntry> SORT_ORDER = new Comparator<SortEntry>() {
+        @Override
+        public int compare(SortEntry left, SortEntry right) {
+            return left.key != -1 && right.key != -1 ? Long.compare(left.key, right.key)
+                    : left.version.compareTo(right.version);
+        }
+    };
+
+    /**
+     * A parsed version with its precomputed numeric sort key.
+     */
+    private static final class SortEntry {
+
+        private final Version version;
+        private final long key;
+
+        SortEntry(Version version) {
+            this.version = version;
+            this.key = version.toLongSortKey();
+        }
+    }
+
+    /**
+     * Parses a range of the strings, storing in each slot of the results either the version (or its sort entry) or the
+     * parse exception.
+     */
+    private static final class ParseTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String[] strings;
+        private final Object[] results;
+        private final boolean sortEntries;
+        private final int from;
+        private final int to;
+
+        ParseTask(String[] strings, Object[] results, boolean sortEntries, int from, int to) {
+            this.strings = strings;
+            this.results = results;
+            this.sortEntries = sortEntries;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > CHUNK_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ParseTask(strings, results, sortEntries, from, middle),
+                        new ParseTask(strings, results, sortEntries, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                try {
+                    Version version = new Version(strings[i]);
+                    results[i] = sortEntries ? new SortEntry(version) : version;
+                } catch (NumberFormatException e) {
+                    results[i] = e;
+                }
+            }
+        }
+    }
+
+    static List<Version> parseAll(Collection<String> versionStrings,
+            BiConsumer<String, NumberFormatException> errorHandler) {
+        String[] strings = versionStrings.toArray(new String[versionStrings.size()]);
+        Version[] versions = parse(strings, false, errorHandler, new Version[strings.length]);
+        return Arrays.asList(versions);
+    }
+
+    static List<Version> sortVersions(Collection<String> versionStrings,
+            BiConsumer<String, NumberFormatException> errorHandler) {
+        String[] strings = versionStrings.toArray(new String[versionStrings.size()]);
+        SortEntry[] entries = parse(strings, true, errorHandler, new SortEntry[strings.length]);
+        Arrays.parallelSort(entries, SORT_ORDER);
+        Version[] versions = new Version[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            versions[i] = entries[i].version;
+        }
+        return Arrays.asList(versions);
+    }
+
+    /**
+     * Parses the strings, reports the failures in their order and returns the successfully parsed elements.
+     */
+    private static <T> T[] parse(String[] strings, boolean sortEntries,
+            BiConsumer<String, NumberFormatException> errorHandler, T[] parsed) {
+        Object[] results = new Object[strings.length];
+        ParseTask task = new ParseTask(strings, results, sortEntries, 0, strings.length);
+        if (strings.length > CHUNK_SIZE) {
+            ForkJoinPool.commonPool().invoke(task);
+        } else {
+            task.compute();
+        }
+        int count = 0;
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] instanceof NumberFormatException) {
+                if (errorHandler != null) {
+                    errorHandler.accept(strings[i], (NumberFormatException) results[i]);
+                }
+            } else {
+                @SuppressWarnings("unchecked")
+                T element = (T) results[i];
+                parsed[count++] = element;
+            }
+        }
+        return count == parsed.length ? parsed : Arrays.copyOf(parsed, count);
+    }
+
+    /**
+     * Initializes an instance of this class.
+     */
+    private VersionBatch() {
+        super();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,182 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.commons;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jahia.commons.encryption.ConfigurationUtils;
+
+/**
+ * Size-bounded cache of parsed {@link Version} instances, keyed by the version string, backing {@link Version#of(String)}.
+ * <p>
+ * The cache is a lock-free two-way set associative table: each version string maps to two adjacent slots and, when both
+ * are taken by other strings, one of them is overwritten. The number of slots can be configured using the
+ * <code>JAHIA_COMMONS_VERSION_CACHE_SIZE</code> environment variable or the <code>jahia-commons.version.cacheSize</code>
+ * system property (rounded up to a power of two, 1024 by default). Hit and miss counters are provided to tune it.
+ *
+ * @author Jahia Solutions Group SA
+ */
+public final class VersionCache {
+
+    private static final String CACHE_SIZE_ENV = "JAHIA_COMMONS_VERSION_CACHE_SIZE";
+    private static final String CACHE_SIZE_PROP = "jahia-commons.version.cacheSize";
+
+    private static final int DEFAULT_CACHE_SIZE = 1024;
+
+    private static final int MAX_CACHE_SIZE = 1 << 20;
+
+    private static final class Entry {
+        final String key;
+        final Version value;
+
+        Entry(String key, Version value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private static final AtomicReferenceArray<Entry> TABLE = new AtomicReferenceArray<Entry>(readCacheSize());
+
+    private static final int MASK = TABLE.length() - 1;
+
+    private static final LongAdder HITS = new LongAdder();
+
+    private static final LongAdder MISSES = new LongAdder();
+
+    /**
+     * Empties the cache and resets the hit and miss counters.
+     */
+    public static void clear() {
+        for (int i = 0; i < TABLE.length(); i++) {
+            TABLE.set(i, null);
+        }
+        HITS.reset();
+        MISSES.reset();
+    }
+
+    /**
+     * Returns the shared version instance for the provided string, parsing it in case of a cache miss.
+     *
+     * @param versionString the version string
+     * @return the shared version instance
+     * @throws NumberFormatException if the string is not a valid version
+     */
+    static Version get(String versionString) throws NumberFormatException {
+        int hash = versionString.hashCode();
+        hash ^= hash >>> 16;
+        int first = hash & MASK & ~1;
+        Entry entry = TABLE.get(first);
+        if (entry != null && entry.key.equals(versionString)) {
+            HITS.increment();
+            return entry.value;
+        }
+        Entry second = TABLE.get(first + 1);
+        if (second != null && second.key.equals(versionString)) {
+            HITS.increment();
+            return second.value;
+        }
+        MISSES.increment();
+        Version version = new Version(versionString);
+        // a concurrent miss on the same string may store another instance: the last write wins, which is harmless
+        int slot;
+        if (entry == null) {
+            slot = first;
+        } else if (second == null) {
+            slot = first + 1;
+        } else {
+            slot = first + (ThreadLocalRandom.current().nextBoolean() ? 1 : 0);
+        }
+        TABLE.set(slot, new Entry(versionString, version));
+        return version;
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache since the start or the last {@link #clear()}.
+     *
+     * @return the number of cache hits
+     */
+    public static long getHitCount() {
+        return HITS.sum();
+    }
+
+    /**
+     * Returns the number of lookups that required parsing since the start or the last {@link #clear()}.
+     *
+     * @return the number of cache misses
+     */
+    public static long getMissCount() {
+        return MISSES.sum();
+    }
+
+    /**
+     * Returns the maximum number of versions the cache can hold.
+     *
+     * @return the number of slots of the cache
+     */
+    public static int getMaxSize() {
+        return TABLE.length();
+    }
+
+    private static int readCacheSize() {
+        String value = ConfigurationUtils.getConfigValue(CACHE_SIZE_ENV, CACHE_SIZE_PROP, null);
+        int size = DEFAULT_CACHE_SIZE;
+        if (value != null) {
+            try {
+                size = Math.max(2, Math.min(MAX_CACHE_SIZE, Integer.parseInt(value.trim())));
+            } catch (NumberFormatException e) {
+                // keep the default size
+            }
+        }
+        return Integer.highestOneBit(size - 1) << 1;
+    }
+
+    /**
+     * Initializes an instance of this class.
+     */
+    private VersionCache() {
+        super();
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.commons;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary codec for {@link Version} objects, e.g. to replicate them between cluster nodes or store them in a
+ * distributed cache. Decoding does not involve any regular expression or string splitting and restores a version
+ * equal to the encoded one, with the same string representation.
+ * <p>
+ * The format is a flag byte (beta, release candidate, suffix and update marker presence), the count of version numbers
+ * and the numbers, the beta or release candidate number, the suffix, the update marker, the count of qualifiers and
+ * the qualifiers. Numbers and counts are unsigned variable-length integers (7 bits per byte), strings are prefixed with
+ * their length in bytes and encoded in modified UTF-8, as in {@link java.io.DataOutput#writeUTF(String)}.
+ *
+ * @author Jahia Solutions Group SA
+ */
+public final class VersionCodec {
+
+    private static final int BETA = 1;
+    private static final int RELEASE_CANDIDATE = 1 << 1;
+    private static final int SUFFIX = 1 << 2;
+    private static final int UPDATE_MARKER = 1 << 3;
+    private static final int KNOWN_FLAGS = BETA | RELEASE_CANDIDATE | SUFFIX | UPDATE_MARKER;
+
+    /**
+     * Returns the number of bytes needed to encode the provided version.
+     *
+     * @param version the version to encode
+     * @return the size of the encoded version in bytes
+     */
+    public static int encodedSize(Version version) {
+        int size = 1 + varIntSize(version.getVersionNumberCount());
+        for (int i = 0; i < version.getVersionNumberCount(); i++) {
+            size += varIntSize(version.getVersionNumber(i));
+        }
+        if (version.isBeta()) {
+            size += varIntSize(version.getBetaNumber());
+        } else if (version.isReleaseCandidate()) {
+            size += varIntSize(version.getReleaseCandidateNumber());
+        }
+        if (version.getVersionPartSuffix() != null) {
+            size += stringSize(version.getVersionPartSuffix());
+        }
+        if (version.getUpdateMarker() != null) {
+            size += stringSize(version.getUpdateMarker());
+        }
+        List<String> qualifiers = version.getQualifiers();
+        size += varIntSize(qualifiers.size());
+        for (int i = 0; i < qualifiers.size(); i++) {
+            size += stringSize(qualifiers.get(i));
+        }
+        return size;
+    }
+
+    /**
+     * Encodes the provided version into a new byte array.
+     *
+     * @param version the version to encode
+     * @return the encoded version
+     */
+    public static byte[] encode(Version version) {
+        byte[] bytes = new byte[encodedSize(version)];
+        write(version, ByteBuffer.wrap(bytes));
+        return bytes;
+    }
+
+    /**
+     * Decodes a version from the provided byte array.
+     *
+     * @param bytes the encoded version
+     * @return the decoded version
+     * @throws IllegalArgumentException if the bytes do not contain a valid encoded version
+     */
+    public static Version decode(byte[] bytes) throws IllegalArgumentException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        Version version = read(buffer);
+        if (buffer.hasRemaining()) {
+            throw new IllegalArgumentException("Unexpected bytes at the end of the encoded version");
+        }
+        return version;
+    }
+
+    /**
+     * Writes the provided version at the current position of the buffer, which is advanced by
+     * {@link #encodedSize(Version)} bytes.
+     *
+     * @param version the version to encode
+     * @param buffer  the buffer to write to
+     * @throws java.nio.BufferOverflowException if there is not enough space remaining in the buffer
+     */
+    public static void write(Version version, ByteBuffer buffer) {
+        String suffix = version.getVersionPartSuffix();
+        String updateMarker = version.getUpdateMarker();
+        int flags = (version.isBeta() ? BETA : 0) | (version.isReleaseCandidate() ? RELEASE_CANDIDATE : 0)
+                | (suffix != null ? SUFFIX : 0) | (updateMarker != null ? UPDATE_MARKER : 0);
+        buffer.put((byte) flags);
+        int count = version.getVersionNumberCount();
+        writeVarInt(count, buffer);
+        for (int i = 0; i < count; i++) {
+            writeVarInt(version.getVersionNumber(i), buffer);
+        }
+        if (version.isBeta()) {
+            writeVarInt(version.getBetaNumber(), buffer);
+        } else if (version.isReleaseCandidate()) {
+            writeVarInt(version.getReleaseCandidateNumber(), buffer);
+        }
+        if (suffix != null) {
+            writeString(suffix, buffer);
+        }
+        if (updateMarker != null) {
+            writeString(updateMarker, buffer);
+        }
+        List<String> qualifiers = version.getQualifiers();
+        writeVarInt(qualifiers.size(), buffer);
+        for (int i = 0; i < qualifiers.size(); i++) {
+            writeString(qualifiers.get(i), buffer);
+        }
+    }
+
+    /**
+     * Reads a version at the current position of the buffer, which is advanced after the encoded version.
+     *
+     * @param buffer the buffer to read from
+     * @return the decoded version
+     * @throws IllegalArgumentException if the buffer does not contain a valid encoded version
+     * @throws java.nio.BufferUnderflowException if the encoded version is truncated
+     */
+    public static Version read(ByteBuffer buffer) throws IllegalArgumentException {
+        int flags = buffer.get() & 0xFF;
+        if ((flags & ~KNOWN_FLAGS) != 0 || (flags & BETA) != 0 && (flags & RELEASE_CANDIDATE) != 0) {
+            throw new IllegalArgumentException("Invalid flags " + flags + " in encoded version");
+        }
+        int count = readCount(buffer);
+        int[] numbers = new int[count];
+        for (int i = 0; i < count; i++) {
+            numbers[i] = readVarInt(buffer);
+        }
+        int betaNumber = (flags & BETA) != 0 ? readVarInt(buffer) : -1;
+        int releaseCandidateNumber = (flags & RELEASE_CANDIDATE) != 0 ? readVarInt(buffer) : -1;
+        String suffix = (flags & SUFFIX) != 0 ? readString(buffer) : null;
+        String updateMarker = (flags & UPDATE_MARKER) != 0 ? readString(buffer) : null;
+        int qualifierCount = readCount(buffer);
+        List<String> qualifiers = new ArrayList<String>(qualifierCount);
+        for (int i = 0; i < qualifierCount; i++) {
+            qualifiers.add(readString(buffer));
+        }
+        return new Version(numbers, betaNumber, releaseCandidateNumber, suffix, updateMarker, qualifiers);
+    }
+
+    private static int varIntSize(int value) {
+        return value == 0 ? 1 : (Integer.SIZE - Integer.numberOfLeadingZeros(value) + 6) / 7;
+    }
+
+    private static void writeVarInt(int value, ByteBuffer buffer) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                if (value < 0) {
+                    throw new IllegalArgumentException("Negative number in encoded version");
+                }
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed variable-length number in encoded version");
+    }
+
+    /**
+     * Reads a count of elements, which cannot exceed the remaining bytes as each element takes at least one byte.
+     */
+    private static int readCount(ByteBuffer buffer) {
+        int count = readVarInt(buffer);
+        if (count > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid count " + count + " in encoded version");
+        }
+        return count;
+    }
+
+    private static int utfLength(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            length += c >= 0x01 && c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+        }
+        return length;
+    }
+
+    private static int stringSize(String value) {
+        int length = utfLength(value);
+        return varIntSize(length) + length;
+    }
+
+    private static void writeString(String value, ByteBuffer buffer) {
+        writeVarInt(utfLength(value), buffer);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x01 && c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = readCount(buffer);
+        char[] chars = new char[length];
+        int count = 0;
+        int end = buffer.position() + length;
+        while (buffer.position() < end) {
+            int b = buffer.get() & 0xFF;
+            if (b < 0x80) {
+                chars[count++] = (char) b;
+            } else if ((b & 0xE0) == 0xC0) {
+                chars[count++] = (char) (((b & 0x1F) << 6) | continuation(buffer, end));
+            } else if ((b & 0xF0) == 0xE0) {
+                int high = continuation(buffer, end);
+                chars[count++] = (char) (((b & 0x0F) << 12) | (high << 6) | continuation(buffer, end));
+            } else {
+                throw new IllegalArgumentException("Malformed string in encoded version");
+            }
+        }
+        return new String(chars, 0, count);
+    }
+
+    private static int continuation(ByteBuffer buffer, int end) {
+        if (buffer.position() >= end) {
+            throw new IllegalArgumentException("Malformed string in encoded version");
+        }
+        int b = buffer.get() & 0xFF;
+        if ((b & 0xC0) != 0x80) {
+            throw new IllegalArgumentException("Malformed string in encoded version");
+        }
+        return b & 0x3F;
+    }
+
+    /**
+     * Initializes an instance of this class.
+     */
+    private VersionCodec() {
+        super();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,325 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.commons;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Immutable index over a set of versions, kept in a sorted array to answer navigation queries (floor, ceiling, latest
+ * version in a range) in O(log n) using the ordering defined by {@link Version#compareTo(Version)}.
+ * <p>
+ * Versions comparing as equal (e.g. <code>1.0</code> and <code>1.0-SNAPSHOT</code>) are all kept, ordered by update
+ * marker and then by qualifiers, versions without qualifiers coming last. Versions which are equal are only kept once.
+ *
+ * @author Jahia Solutions Group SA
+ */
+public final class VersionIndex implements Iterable<Version> {
+
+    private static final VersionIndex EMPTY = new VersionIndex(new Version[0]);
+
+    /**
+     * Total order on versions, refining {@link Version#compareTo(Version)} so that only equal versions compare as 0.
+     */
+    static final Comparator<Version> ORDER = new Comparator<Version>() {
+        @Override
+        public int compare(Version left, Version right) {
+            int result = left.compareTo(right);
+            if (result != 0) {
+                return result;
+            }
+            String leftMarker = left.getUpdateMarker();
+            String rightMarker = right.getUpdateMarker();
+            if (leftMarker != rightMarker) {
+                if (leftMarker == null || rightMarker == null) {
+                    return leftMarker == null ? -1 : 1;
+                }
+                result = leftMarker.compareTo(rightMarker);
+                if (result != 0) {
+                    return result;
+                }
+            }
+            List<String> leftQualifiers = left.getQualifiers();
+            List<String> rightQualifiers = right.getQualifiers();
+            if (leftQualifiers.isEmpty() || rightQualifiers.isEmpty()) {
+                return Boolean.compare(leftQualifiers.isEmpty(), rightQualifiers.isEmpty());
+            }
+            int length = Math.min(leftQualifiers.size(), rightQualifiers.size());
+            for (int i = 0; i < length; i++) {
+                result = leftQualifiers.get(i).compareTo(rightQualifiers.get(i));
+                if (result != 0) {
+                    return result;
+                }
+            }
+            return Integer.compare(leftQualifiers.size(), rightQualifiers.size());
+        }
+    };
+
+    private final Version[] versions;
+
+    private final int latestFinal;
+
+    /**
+     * Builds an index over the provided versions, which do not need to be sorted.
+     *
+     * @param versions the versions to index
+     * @return the index
+     */
+    public static VersionIndex of(Collection<Version> versions) {
+        if (versions.isEmpty()) {
+            return EMPTY;
+        }
+        Version[] sorted = versions.toArray(new Version[versions.size()]);
+        Arrays.parallelSort(sorted, ORDER);
+        return new VersionIndex(removeDuplicates(sorted));
+    }
+
+    /**
+     * Returns an index without any version.
+     *
+     * @return the empty index
+     */
+    public static VersionIndex empty() {
+        return EMPTY;
+    }
+
+    private static Version[] removeDuplicates(Version[] sorted) {
+        int size = 1;
+        for (int i = 1; i < sorted.length; i++) {
+            if (!sorted[i].equals(sorted[size - 1])) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        return size == sorted.length ? sorted : Arrays.copyOf(sorted, size);
+    }
+
+    VersionIndex(Version[] sortedVersions) {
+        this.versions = sortedVersions;
+        int index = sortedVersions.length - 1;
+        while (index >= 0 && !sortedVersions[index].isFinal()) {
+            index--;
+        }
+        this.latestFinal = index;
+    }
+
+    /**
+     * Returns the greatest version lower than or equal to the provided one.
+     *
+     * @param version the version to search for
+     * @return the greatest version lower than or equal to the provided one or null if there is no such version
+     */
+    public Version floor(Version version) {
+        int index = floorIndex(version, true);
+        return index >= 0 ? versions[index] : null;
+    }
+
+    /**
+     * Returns the greatest version strictly lower than the provided one.
+     *
+     * @param version the version to search for
+     * @return the greatest version lower than the provided one or null if there is no such version
+     */
+    public Version lower(Version version) {
+        int index = floorIndex(version, false);
+        return index >= 0 ? versions[index] : null;
+    }
+
+    /**
+     * Returns the lowest version greater than or equal to the provided one.
+     *
+     * @param version the version to search for
+     * @return the lowest version greater than or equal to the provided one or null if there is no such version
+     */
+    public Version ceiling(Version version) {
+        int index = floorIndex(version, false) + 1;
+        return index < versions.length ? versions[index] : null;
+    }
+
+    /**
+     * Returns the lowest version strictly greater than the provided one.
+     *
+     * @param version the version to search for
+     * @return the lowest version greater than the provided one or null if there is no such version
+     */
+    public Version higher(Version version) {
+        int index = floorIndex(version, true) + 1;
+        return index < versions.length ? versions[index] : null;
+    }
+
+    /**
+     * Returns the highest version of the index.
+     *
+     * @return the highest version or null if the index is empty
+     */
+    public Version latest() {
+        return versions.length > 0 ? versions[versions.length - 1] : null;
+    }
+
+    /**
+     * Returns the highest version of the index which is neither a beta nor a release candidate.
+     *
+     * @return the highest final version or null if there is none
+     */
+    public Version latestFinal() {
+        return latestFinal >= 0 ? versions[latestFinal] : null;
+    }
+
+    /**
+     * Returns the highest version of the index within the provided range.
+     *
+     * @param range the version range
+     * @return the highest version in the range or null if there is none
+     */
+    public Version latestIn(VersionRange range) {
+        Version latest = null;
+        for (VersionRange.Interval interval : range.getIntervals()) {
+            int index = interval.upper != null ? floorIndex(interval.upper, interval.upperInclusive)
+                    : versions.length - 1;
+            if (index >= 0 && (latest == null || ORDER.compare(versions[index], latest) > 0)
+                    && interval.contains(versions[index])) {
+                latest = versions[index];
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Returns the index of the last version lower than (or equal to, if inclusive) the provided one, -1 if there is
+     * none.
+     */
+    private int floorIndex(Version version, boolean inclusive) {
+        int low = 0;
+        int high = versions.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = versions[middle].compareTo(version);
+            if (comparison < 0 || comparison == 0 && inclusive) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * Checks if the index contains a version equal to the provided one.
+     *
+     * @param version the version to search for
+     * @return true if an equal version is indexed
+     */
+    public boolean contains(Version version) {
+        return Arrays.binarySearch(versions, version, ORDER) >= 0;
+    }
+
+    /**
+     * Returns an index containing the versions of this one and the provided version. This index is left unchanged.
+     *
+     * @param version the version to add
+     * @return the new index or this one if it already contains an equal version
+     */
+    public VersionIndex with(Version version) {
+        int index = Arrays.binarySearch(versions, version, ORDER);
+        if (index >= 0) {
+            return this;
+        }
+        index = -index - 1;
+        Version[] result = new Version[versions.length + 1];
+        System.arraycopy(versions, 0, result, 0, index);
+        result[index] = version;
+        System.arraycopy(versions, index, result, index + 1, versions.length - index);
+        return new VersionIndex(result);
+    }
+
+    /**
+     * Returns an index containing the versions of this one except the provided version. This index is left unchanged.
+     *
+     * @param version the version to remove
+     * @return the new index or this one if it does not contain an equal version
+     */
+    public VersionIndex without(Version version) {
+        int index = Arrays.binarySearch(versions, version, ORDER);
+        if (index < 0) {
+            return this;
+        }
+        if (versions.length == 1) {
+            return EMPTY;
+        }
+        Version[] result = new Version[versions.length - 1];
+        System.arraycopy(versions, 0, result, 0, index);
+        System.arraycopy(versions, index + 1, result, index, result.length - index);
+        return new VersionIndex(result);
+    }
+
+    /**
+     * Returns the indexed versions in ascending order.
+     *
+     * @return a read-only list of the indexed versions
+     */
+    public List<Version> asList() {
+        return Collections.unmodifiableList(Arrays.asList(versions));
+    }
+
+    @Override
+    public Iterator<Version> iterator() {
+        return asList().iterator();
+    }
+
+    public boolean isEmpty() {
+        return versions.length == 0;
+    }
+
+    public int size() {
+        return versions.length;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(versions);
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.commons;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A range of versions, parsed once from the Maven / OSGi interval syntax and then matched against {@link Version}
+ * objects using their ordering. Supported forms are:
+ * <ul>
+ * <li><code>[1.2,2.0)</code>, <code>(1.0,2.0]</code>, <code>[1.5,)</code>, <code>(,1.0]</code> - intervals with
+ * inclusive (square bracket) or exclusive (parenthesis) bounds, a missing bound meaning no limit</li>
+ * <li><code>[1.0]</code> - exact version pin</li>
+ * <li><code>(,1.0],[1.2,)</code> - union of intervals</li>
+ * <li><code>1.x</code>, <code>1.2.*</code> - wildcards, equivalent to <code>[1,2)</code> and <code>[1.2,1.3)</code></li>
+ * <li><code>1.0</code> - a version alone, meaning "at least 1.0" as in OSGi</li>
+ * </ul>
+ * Every version of a range must start with a number. Instances are immutable and thread-safe.
+ *
+ * @author Jahia Solutions Group SA
+ */
+public final class VersionRange {
+
+    /**
+     * An interval of versions, with optional bounds.
+     */
+    static final class Interval {
+
+        final Version lower;
+        final boolean lowerInclusive;
+        final Version upper;
+        final boolean upperInclusive;
+
+        Interval(Version lower, boolean lowerInclusive, Version upper, boolean upperInclusive) {
+            this.lower = lower;
+            this.lowerInclusive = lowerInclusive;
+            this.upper = upper;
+            this.upperInclusive = upperInclusive;
+        }
+
+        boolean contains(Version version) {
+            if (lower != null) {
+                int comparison = lower.compareTo(version);
+                if (comparison > 0 || comparison == 0 && !lowerInclusive) {
+                    return false;
+                }
+            }
+            if (upper != null) {
+                int comparison = version.compareTo(upper);
+                if (comparison > 0 || comparison == 0 && !upperInclusive) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private final String range;
+
+    private final Interval[] intervals;
+
+    /**
+     * Parses the provided range. See class definition for the supported syntax.
+     *
+     * @param range the range to parse
+     * @return the parsed range
+     * @throws IllegalArgumentException if the range is not valid
+     */
+    public static VersionRange parse(String range) throws IllegalArgumentException {
+        if (range == null) {
+            throw new IllegalArgumentException("Null string passed as version range !");
+        }
+        String trimmedRange = range.trim();
+        if (trimmedRange.length() == 0) {
+            throw new IllegalArgumentException("Empty string passed as version range !");
+        }
+        char first = trimmedRange.charAt(0);
+        if (first != '[' && first != '(') {
+            return new VersionRange(trimmedRange, new Interval[] { parseSingle(trimmedRange) });
+        }
+
+        List<Interval> intervals = new ArrayList<Interval>(1);
+        int pos = 0;
+        int length = trimmedRange.length();
+        while (pos < length) {
+            char open = trimmedRange.charAt(pos);
+            if (open != '[' && open != '(') {
+                throw new IllegalArgumentException("Expected '[' or '(' at position " + pos + " in version range '"
+                        + range + "'");
+            }
+            int close = pos + 1;
+            while (close < length && trimmedRange.charAt(close) != ']' && trimmedRange.charAt(close) != ')') {
+                close++;
+            }
+            if (close == length) {
+                throw new IllegalArgumentException("Unterminated interval in version range '" + range + "'");
+            }
+            intervals.add(parseInterval(trimmedRange, pos, close, range));
+            pos = close + 1;
+            while (pos < length && Character.isWhitespace(trimmedRange.charAt(pos))) {
+                pos++;
+            }
+            if (pos < length) {
+                if (trimmedRange.charAt(pos) != ',') {
+                    throw new IllegalArgumentException("Expected ',' at position " + pos + " in version range '"
+                            + range + "'");
+                }
+                pos++;
+                while (pos < length && Character.isWhitespace(trimmedRange.charAt(pos))) {
+                    pos++;
+                }
+                if (pos == length) {
+                    throw new IllegalArgumentException("Missing interval after ',' in version range '" + range + "'");
+                }
+            }
+        }
+        return new VersionRange(trimmedRange, intervals.toArray(new Interval[intervals.size()]));
+    }
+
+    private static Interval parseInterval(String s, int open, int close, String range) {
+        boolean lowerInclusive = s.charAt(open) == '[';
+        boolean upperInclusive = s.charAt(close) == ']';
+        int comma = s.indexOf(',', open + 1);
+        if (comma == -1 || comma > close) {
+            // exact version pin
+            if (!lowerInclusive || !upperInclusive) {
+                throw new IllegalArgumentException("Exact version must be written with square brackets in version range '"
+                        + range + "'");
+            }
+            Version version = parseBound(s, open + 1, close, range);
+            if (version == null) {
+                throw new IllegalArgumentException("Empty interval in version range '" + range + "'");
+            }
+            return new Interval(version, true, version, true);
+        }
+        Version lower = parseBound(s, open + 1, comma, range);
+        Version upper = parseBound(s, comma + 1, close, range);
+        if (lower != null && upper != null) {
+            int comparison = lower.compareTo(upper);
+            if (comparison > 0 || comparison == 0 && !(lowerInclusive && upperInclusive)) {
+                throw new IllegalArgumentException("Lower bound is higher than upper bound in version range '" + range
+                        + "'");
+            }
+        }
+        return new Interval(lower, lower != null && lowerInclusive, upper, upper != null && upperInclusive);
+    }
+
+    private static Version parseBound(String s, int start, int end, String range) {
+        String bound = s.substring(start, end).trim();
+        if (bound.length() == 0) {
+            return null;
+        }
+        if (bound.indexOf(',') != -1) {
+            throw new IllegalArgumentException("Too many bounds in version range '" + range + "'");
+        }
+        return parseVersion(bound, range);
+    }
+
+    /**
+     * Parses a version of the range, which must start with a version number: unlike {@link Version}, which considers
+     * such strings as qualifiers, a range does not accept a version like <code>foo</code>.
+     */
+    private static Version parseVersion(String version, String range) {
+        char first = version.charAt(0);
+        if (first < '0' || first > '9') {
+            throw new IllegalArgumentException("Version '" + version
+                    + "' does not start with a number in version range '" + range + "'");
+        }
+        return Version.of(version);
+    }
+
+    private static Interval parseSingle(String range) {
+        int wildcard = -1;
+        int length = range.length();
+        for (int i = 0; i < length; i++) {
+            char c = range.charAt(i);
+            if ((c == 'x' || c == 'X' || c == '*') && (i == 0 || range.charAt(i - 1) == '.')
+                    && (i == length - 1 || range.charAt(i + 1) == '.')) {
+                wildcard = i;
+                break;
+            }
+        }
+        if (wildcard == -1) {
+            return new Interval(parseVersion(range, range), true, null, false);
+        }
+        for (int i = wildcard; i < length; i++) {
+            char c = range.charAt(i);
+            if (c != 'x' && c != 'X' && c != '*' && c != '.') {
+                throw new IllegalArgumentException("Only wildcards are allowed after a wildcard in version range '"
+                        + range + "'");
+            }
+        }
+        if (wildcard == 0) {
+            return new Interval(null, false, null, false);
+        }
+        Version lower = parseVersion(range.substring(0, wildcard - 1), range);
+        if (!lower.isFinal() || lower.getUpdateMarker() != null || !lower.getQualifiers().isEmpty()
+                || lower.getVersionPartSuffix().length() > 0) {
+            throw new IllegalArgumentException("Only numbers are allowed before a wildcard in version range '" + range
+                    + "'");
+        }
+        List<Integer> numbers = lower.getOrderedVersionNumbers();
+        int[] upperNumbers = new int[numbers.size()];
+        for (int i = 0; i < upperNumbers.length; i++) {
+            upperNumbers[i] = numbers.get(i);
+        }
+        upperNumbers[upperNumbers.length - 1]++;
+        Version upper = new Version(upperNumbers, -1, -1, "", null, new ArrayList<String>(0));
+        return new Interval(lower, true, upper, false);
+    }
+
+    private VersionRange(String range, Interval[] intervals) {
+        this.range = range;
+        this.intervals = intervals;
+    }
+
+    /**
+     * Checks if the provided version is part of this range.
+     *
+     * @param version the version to check
+     * @return true if the version is in the range
+     */
+    public boolean contains(Version version) {
+        for (Interval interval : intervals) {
+            if (interval.contains(version)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the versions of the provided collection which are part of this range, in iteration order.
+     *
+     * @param versions the versions to filter
+     * @return the list of versions in the range
+     */
+    public List<Version> filter(Collection<Version> versions) {
+        List<Version> result = new ArrayList<Version>(versions.size());
+        for (Version version : versions) {
+            if (contains(version)) {
+                result.add(version);
+            }
+        }
+        return result;
+    }
+
+    Interval[] getIntervals() {
+        return intervals;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return this == obj || obj != null && getClass() == obj.getClass() && range.equals(((VersionRange) obj).range);
+    }
+
+    @Override
+    public int hashCode() {
+        return range.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return range;
+    }
+}
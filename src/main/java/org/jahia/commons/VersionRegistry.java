@@ -0,0 +1,184 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.commons;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Thread-safe registry of the versions available for named artifacts (e.g. modules), ordered as defined by
+ * {@link Version#compareTo(Version)}.
+ * <p>
+ * The versions of each artifact are held in an immutable {@link VersionIndex} which is replaced on every change, so
+ * that readers never block and always see a consistent snapshot: looking up the latest version of an artifact is a
+ * single map read. Writers compute the new index and swap it with a compare-and-set, retrying if another writer
+ * changed the same artifact in the meantime.
+ *
+ * @author Jahia Solutions Group SA
+ */
+public class VersionRegistry {
+
+    private final ConcurrentMap<String, VersionIndex> indexes = new ConcurrentHashMap<String, VersionIndex>();
+
+    /**
+     * Registers a version of the specified artifact.
+     *
+     * @param name    the artifact name
+     * @param version the version to register
+     * @return true if the version was added, false if an equal version was already registered
+     */
+    public boolean add(String name, Version version) {
+        while (true) {
+            VersionIndex current = indexes.get(name);
+            if (current == null) {
+                if (indexes.putIfAbsent(name, VersionIndex.empty().with(version)) == null) {
+                    return true;
+                }
+                continue;
+            }
+            VersionIndex updated = current.with(version);
+            if (updated == current) {
+                return false;
+            }
+            if (indexes.replace(name, current, updated)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Unregisters a version of the specified artifact. The artifact is removed from the registry when its last version
+     * is removed.
+     *
+     * @param name    the artifact name
+     * @param version the version to unregister
+     * @return true if the version was removed, false if it was not registered
+     */
+    public boolean remove(String name, Version version) {
+        while (true) {
+            VersionIndex current = indexes.get(name);
+            if (current == null) {
+                return false;
+            }
+            VersionIndex updated = current.without(version);
+            if (updated == current) {
+                return false;
+            }
+            if (updated.isEmpty() ? indexes.remove(name, current) : indexes.replace(name, current, updated)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Unregisters all versions of the specified artifact.
+     *
+     * @param name the artifact name
+     * @return the versions which were registered for the artifact
+     */
+    public VersionIndex removeAll(String name) {
+        VersionIndex removed = indexes.remove(name);
+        return removed != null ? removed : VersionIndex.empty();
+    }
+
+    /**
+     * Returns a snapshot of the versions registered for the specified artifact, which is not affected by later changes.
+     *
+     * @param name the artifact name
+     * @return the registered versions, empty if the artifact is unknown
+     */
+    public VersionIndex getVersions(String name) {
+        VersionIndex index = indexes.get(name);
+        return index != null ? index : VersionIndex.empty();
+    }
+
+    /**
+     * Returns the highest version registered for the specified artifact.
+     *
+     * @param name the artifact name
+     * @return the latest version or null if the artifact is unknown
+     */
+    public Version getLatest(String name) {
+        return getVersions(name).latest();
+    }
+
+    /**
+     * Returns the highest final (neither beta nor release candidate) version registered for the specified artifact.
+     *
+     * @param name the artifact name
+     * @return the latest final version or null if there is none
+     */
+    public Version getLatestFinal(String name) {
+        return getVersions(name).latestFinal();
+    }
+
+    /**
+     * Returns the highest version registered for the specified artifact within the provided range.
+     *
+     * @param name  the artifact name
+     * @param range the version range
+     * @return the latest version in the range or null if there is none
+     */
+    public Version getLatestIn(String name, VersionRange range) {
+        return getVersions(name).latestIn(range);
+    }
+
+    /**
+     * Returns the names of the artifacts having at least one registered version.
+     *
+     * @return a read-only view of the artifact names
+     */
+    public Set<String> getNames() {
+        return Collections.unmodifiableSet(indexes.keySet());
+    }
+
+    /**
+     * Unregisters all artifacts.
+     */
+    public void clear() {
+        indexes.clear();
+    }
+}
\ No newline at end of file
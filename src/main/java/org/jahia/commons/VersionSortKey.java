@@ -0,0 +1,341 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.commons;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encoding of {@link Version} objects into keys whose unsigned lexicographic order matches
+ * {@link Version#compareTo(Version)}.
+ * <p>
+ * The binary key starts with the part significant for comparison: each version number without the trailing zeros,
+ * encoded as its byte count (plus one) followed by its big-endian bytes, a <code>0x00</code> terminator, and the state
+ * (<code>0x01</code> beta, <code>0x02</code> release candidate, <code>0x03</code> final) followed by the beta or release
+ * candidate number, and <code>0x01</code> followed by the timestamp and build number for a timestamped snapshot or
+ * <code>0x02</code> for other versions. The rest is only needed to restore the version: update marker, qualifiers, count of trailing zeros
+ * and version part suffix. Strings are encoded as CESU-8 with <code>0x00</code> escaped as <code>0x00 0xFF</code> and
+ * terminated by <code>0x00 0x01</code>, which preserves their order.
+ *
+ * @author Jahia Solutions Group SA
+ */
+final class VersionSortKey {
+
+    private static final int STATE_BETA = 1;
+    private static final int STATE_RELEASE_CANDIDATE = 2;
+    private static final int STATE_FINAL = 3;
+
+    private static final int TIMESTAMPED_SNAPSHOT = 1;
+    private static final int NOT_TIMESTAMPED_SNAPSHOT = 2;
+
+    private static final int ABSENT = 0;
+    private static final int PRESENT = 1;
+
+    private static final int[] LONG_KEY_NUMBER_BITS = { 14, 14, 12, 12 };
+    private static final int LONG_KEY_STATE_NUMBER_BITS = 9;
+
+    static byte[] encode(Version version) {
+        Writer out = new Writer();
+        int length = version.getNormalizedLength();
+        for (int i = 0; i < length; i++) {
+            out.writeNumber(version.getVersionNumber(i));
+        }
+        out.write(0);
+        if (version.isBeta()) {
+            out.write(STATE_BETA);
+            out.writeNumber(version.getBetaNumber());
+        } else if (version.isReleaseCandidate()) {
+            out.write(STATE_RELEASE_CANDIDATE);
+            out.writeNumber(version.getReleaseCandidateNumber());
+        } else {
+            out.write(STATE_FINAL);
+        }
+        if (version.isTimestampedSnapshot()) {
+            out.write(TIMESTAMPED_SNAPSHOT);
+            out.writeLong(version.getSnapshotTimestamp());
+            out.writeNumber(version.getSnapshotBuildNumber());
+        } else {
+            out.write(NOT_TIMESTAMPED_SNAPSHOT);
+        }
+
+        out.writeNullableString(version.getUpdateMarker());
+        for (String qualifier : version.getQualifiers()) {
+            out.write(PRESENT);
+            out.writeString(qualifier);
+        }
+        out.write(ABSENT);
+        out.writeNumber(version.getVersionNumberCount() - length);
+        out.writeNullableString(version.getVersionPartSuffix());
+        return out.toByteArray();
+    }
+
+    static long encodeLong(Version version) {
+        int length = version.getNormalizedLength();
+        if (length > LONG_KEY_NUMBER_BITS.length || version.isTimestampedSnapshot()) {
+            return -1;
+        }
+        long key = 0;
+        for (int i = 0; i < LONG_KEY_NUMBER_BITS.length; i++) {
+            int number = version.getVersionNumber(i);
+            if (number >= 1 << LONG_KEY_NUMBER_BITS[i]) {
+                return -1;
+            }
+            key = (key << LONG_KEY_NUMBER_BITS[i]) | number;
+        }
+        int state;
+        int stateNumber;
+        if (version.isBeta()) {
+            state = STATE_BETA;
+            stateNumber = version.getBetaNumber();
+        } else if (version.isReleaseCandidate()) {
+            state = STATE_RELEASE_CANDIDATE;
+            stateNumber = version.getReleaseCandidateNumber();
+        } else {
+            state = STATE_FINAL;
+            stateNumber = 0;
+        }
+        if (stateNumber >= 1 << LONG_KEY_STATE_NUMBER_BITS) {
+            return -1;
+        }
+        return (((key << 2) | (state - 1)) << LONG_KEY_STATE_NUMBER_BITS) | stateNumber;
+    }
+
+    static Version decode(byte[] key) throws IllegalArgumentException {
+        Reader in = new Reader(key);
+        int[] numbers = new int[8];
+        int length = 0;
+        while (in.peek() != 0) {
+            if (length == numbers.length) {
+                numbers = Arrays.copyOf(numbers, length * 2);
+            }
+            numbers[length++] = in.readNumber();
+        }
+        in.read();
+        int betaNumber = -1;
+        int releaseCandidateNumber = -1;
+        int state = in.read();
+        if (state == STATE_BETA) {
+            betaNumber = in.readNumber();
+        } else if (state == STATE_RELEASE_CANDIDATE) {
+            releaseCandidateNumber = in.readNumber();
+        } else if (state != STATE_FINAL) {
+            throw new IllegalArgumentException("Invalid version state " + state + " in sort key");
+        }
+        // the snapshot timestamp is restored from the qualifiers
+        int snapshot = in.read();
+        if (snapshot == TIMESTAMPED_SNAPSHOT) {
+            in.skip(8);
+            in.readNumber();
+        } else if (snapshot != NOT_TIMESTAMPED_SNAPSHOT) {
+            throw new IllegalArgumentException("Invalid snapshot marker " + snapshot + " in sort key");
+        }
+
+        String updateMarker = in.readNullableString();
+        List<String> qualifiers = new ArrayList<String>(0);
+        while (in.read() == PRESENT) {
+            qualifiers.add(in.readString());
+        }
+        int trailingZeros = in.readNumber();
+        String versionPartSuffix = in.readNullableString();
+        if (!in.isAtEnd()) {
+            throw new IllegalArgumentException("Unexpected bytes at the end of the version sort key");
+        }
+        return new Version(Arrays.copyOf(numbers, length + trailingZeros), betaNumber, releaseCandidateNumber,
+                versionPartSuffix, updateMarker, qualifiers);
+    }
+
+    private static final class Writer {
+
+        private byte[] buffer = new byte[32];
+        private int size;
+
+        void write(int b) {
+            if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, size * 2);
+            }
+            buffer[size++] = (byte) b;
+        }
+
+        /**
+         * Writes a non-negative number as the count of its significant bytes plus one, followed by these bytes in
+         * big-endian order: the result sorts as the number.
+         */
+        void writeNumber(int number) {
+            int byteCount = (Integer.SIZE - Integer.numberOfLeadingZeros(number) + 7) / 8;
+            write(byteCount + 1);
+            for (int shift = (byteCount - 1) * 8; shift >= 0; shift -= 8) {
+                write(number >>> shift);
+            }
+        }
+
+        void writeLong(long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                write((int) (value >>> shift));
+            }
+        }
+
+        void writeNullableString(String value) {
+            if (value == null) {
+                write(ABSENT);
+            } else {
+                write(PRESENT);
+                writeString(value);
+            }
+        }
+
+        void writeString(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == 0) {
+                    write(0x00);
+                    write(0xFF);
+                } else if (c < 0x80) {
+                    write(c);
+                } else if (c < 0x800) {
+                    write(0xC0 | (c >> 6));
+                    write(0x80 | (c & 0x3F));
+                } else {
+                    write(0xE0 | (c >> 12));
+                    write(0x80 | ((c >> 6) & 0x3F));
+                    write(0x80 | (c & 0x3F));
+                }
+            }
+            write(0x00);
+            write(0x01);
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+    }
+
+    private static final class Reader {
+
+        private final byte[] buffer;
+        private int pos;
+
+        Reader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        boolean isAtEnd() {
+            return pos == buffer.length;
+        }
+
+        int peek() {
+            if (pos >= buffer.length) {
+                throw new IllegalArgumentException("Truncated version sort key");
+            }
+            return buffer[pos] & 0xFF;
+        }
+
+        int read() {
+            int b = peek();
+            pos++;
+            return b;
+        }
+
+        void skip(int count) {
+            if (pos + count > buffer.length) {
+                throw new IllegalArgumentException("Truncated version sort key");
+            }
+            pos += count;
+        }
+
+        int readNumber() {
+            int byteCount = read() - 1;
+            if (byteCount < 0 || byteCount > 4) {
+                throw new IllegalArgumentException("Invalid number length " + byteCount + " in version sort key");
+            }
+            int number = 0;
+            for (int i = 0; i < byteCount; i++) {
+                number = (number << 8) | read();
+            }
+            if (number < 0) {
+                throw new IllegalArgumentException("Negative number in version sort key");
+            }
+            return number;
+        }
+
+        String readNullableString() {
+            int marker = read();
+            if (marker == ABSENT) {
+                return null;
+            } else if (marker == PRESENT) {
+                return readString();
+            }
+            throw new IllegalArgumentException("Invalid string marker " + marker + " in version sort key");
+        }
+
+        String readString() {
+            StringBuilder value = new StringBuilder();
+            while (true) {
+                int b = read();
+                if (b == 0x00) {
+                    int escaped = read();
+                    if (escaped == 0x01) {
+                        return value.toString();
+                    } else if (escaped != 0xFF) {
+                        throw new IllegalArgumentException("Invalid escape sequence in version sort key");
+                    }
+                    value.append((char) 0);
+                } else if (b < 0x80) {
+                    value.append((char) b);
+                } else if (b < 0xE0) {
+                    value.append((char) (((b & 0x1F) << 6) | (read() & 0x3F)));
+                } else {
+                    value.append((char) (((b & 0x0F) << 12) | ((read() & 0x3F) << 6) | (read() & 0x3F)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Initializes an instance of this class.
+     */
+    private VersionSortKey() {
+        super();
+    }
+}
@@ -0,0 +1,557 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.commons;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Unit test for the SQL script parsing and execution.
+ */
+public class DatabaseScriptsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String SCRIPT = "# MySQL script\n"
+            + "delimiter $$\n"
+            + "create table a (\n"
+            + "  id int, -- identifier\n"
+            + "  name varchar(50) /* the name */\n"
+            + ");\n"
+            + "insert into a values (1, 'it''s -- not a comment');\n"
+            + "\n"
+            + "REM Oracle comment\n"
+            + "create trigger t before insert on a for each row begin\n"
+            + "  set new.id = 2\n"
+            + "end $$;\n"
+            + "/\n"
+            + "drop table b;\n"
+            + "update a set name = 'x' // trailing comment\n";
+
+    private static final List<String> STATEMENTS = Arrays.asList(
+            "create table a (\nid int,\nname varchar(50)\n)",
+            "insert into a values (1, 'it''s -- not a comment')",
+            "create trigger t before insert on a for each row begin\nset new.id = 2\nend;",
+            "drop table b",
+            "update a set name = 'x'");
+
+    @Test
+    public void testScriptStatements() throws IOException {
+        Assert.assertEquals(STATEMENTS, DatabaseScripts.getScriptStatements(new StringReader(SCRIPT)));
+        Assert.assertTrue(DatabaseScripts.getScriptStatements(new StringReader("-- nothing\n;\n")).isEmpty());
+    }
+
+    @Test
+    public void testScriptComments() throws IOException {
+        String script = "/* multi-line\n"
+                + "   comment; */ create table c (id int);\r\n"
+                + "insert into c values ('#1') # comment after a quoted marker\r\n"
+                + ";\n"
+                + "insert into c values ('a /* not a comment */ b');";
+        Assert.assertEquals(Arrays.asList("create table c (id int)", "insert into c values ('#1')",
+                "insert into c values ('a /* not a comment */ b')"),
+                DatabaseScripts.getScriptStatements(new StringReader(script)));
+    }
+
+    @Test
+    public void testUnbalancedApostrophe() throws IOException {
+        String script = "INSERT INTO person VALUES (\"O'Brien\",\n"
+                + "  1); -- first row\n"
+                + "-- don't merge the next statements\n"
+                + "CREATE TABLE t (id int);\n"
+                + "CREATE INDEX t_idx ON t (id);";
+        Assert.assertEquals(Arrays.asList("INSERT INTO person VALUES (\"O'Brien\",\n1)", "CREATE TABLE t (id int)",
+                "CREATE INDEX t_idx ON t (id)"), DatabaseScripts.getScriptStatements(new StringReader(script)));
+    }
+
+    @Test
+    public void testStreamScriptStatements() {
+        try (Stream<String> statements = DatabaseScripts.streamScriptStatements(new StringReader(SCRIPT))) {
+            Assert.assertEquals(STATEMENTS, statements.collect(Collectors.toList()));
+        }
+        try (Stream<String> statements = DatabaseScripts.streamScriptStatements(new StringReader(SCRIPT))) {
+            Assert.assertEquals("Statements should be read lazily", STATEMENTS.get(0), statements.findFirst().get());
+        }
+    }
+
+    @Test
+    public void testExecuteScript() throws IOException, SQLException {
+        RecordingConnection connection = new RecordingConnection().failOn("drop");
+        DatabaseScripts.executeScript(new StringReader(SCRIPT), connection.getConnection());
+        Assert.assertEquals("Failing DROP statement should be ignored",
+                Arrays.asList(STATEMENTS.get(0), STATEMENTS.get(1), STATEMENTS.get(2), STATEMENTS.get(4)),
+                connection.getExecuted());
+
+        connection = new RecordingConnection().failOn("insert");
+        try {
+            DatabaseScripts.executeScript(new StringReader(SCRIPT), connection.getConnection());
+            Assert.fail("Failing INSERT statement should stop the script");
+        } catch (SQLException e) {
+            Assert.assertEquals(Arrays.asList(STATEMENTS.get(0)), connection.getExecuted());
+        }
+    }
+
+    @Test
+    public void testExecuteStatementsInBatches() throws SQLException {
+        List<String> statements = Arrays.asList("drop table t", "create table t (id int)", "insert into t values (1)",
+                "insert into t values (2)", "update t set id = 3", "alter table t add primary key (id)",
+                "delete from t");
+
+        RecordingConnection connection = new RecordingConnection().failOn("drop");
+        DatabaseScripts.executeStatements(statements, connection.getConnection(), 2);
+        Assert.assertEquals(statements.subList(1, statements.size()), connection.getExecuted());
+        Assert.assertEquals(Arrays.asList(2, 1, 1), connection.getBatchSizes());
+
+        connection = new RecordingConnection().failOn("values (2)");
+        try {
+            DatabaseScripts.executeStatements(statements, connection.getConnection(), 10);
+            Assert.fail("Failing INSERT statement should stop the execution");
+        } catch (SQLException e) {
+            Assert.assertEquals("Statements executed before the failing one should not be executed again",
+                    statements.subList(0, 3), connection.getExecuted());
+            Assert.assertEquals("insert into t values (2)", e.getMessage().substring("Failing statement: ".length()));
+        }
+
+        connection = new RecordingConnection().failOn("values (2)").plainBatchFailures();
+        try {
+            DatabaseScripts.executeStatements(statements, connection.getConnection(), 10);
+            Assert.fail("Failing batch without update counts should stop the execution");
+        } catch (SQLException e) {
+            Assert.assertEquals("Statements of a batch without update counts should not be executed again",
+                    statements.subList(0, 3), connection.getExecuted());
+        }
+    }
+
+    @Test
+    public void testStatementDependencies() {
+        List<String> statements = Arrays.asList("create table a (id int)", "create table b (id int)",
+                "create index a_idx on a (id)", "alter table b add constraint fk foreign key (id) references a (id)",
+                "create trigger t before insert on a for each row begin null; end;", "create index b_idx on b (id)",
+                "insert into c values ('x')");
+        Assert.assertEquals(Arrays.asList(Arrays.<Integer>asList(), Arrays.<Integer>asList(), Arrays.asList(0),
+                Arrays.asList(1, 2), Arrays.asList(0, 1, 2, 3), Arrays.asList(4), Arrays.asList(4)),
+                ParallelStatementExecutor.getDependencies(statements));
+
+        // the statements whose references are not certain are barriers
+        statements = Arrays.asList("create table jahia_nodes (id int)", "comment on table jahia_nodes is 'x'",
+                "create table a (id int)", "create table b (id int)", "insert into c select a.id from a, b",
+                "create table d (id int default nextval('s'))", "create sequence s",
+                "alter table d add constraint fk foreign key (id) references a (id) on delete cascade",
+                "insert into d values (1, 'f(x), from y')");
+        Assert.assertEquals(Arrays.asList(Arrays.<Integer>asList(), Arrays.asList(0), Arrays.asList(1),
+                Arrays.asList(1), Arrays.asList(2, 3, 1), Arrays.asList(4), Arrays.asList(5), Arrays.asList(5),
+                Arrays.asList(7)), ParallelStatementExecutor.getDependencies(statements));
+        Assert.assertEquals(new LinkedHashSet<String>(Arrays.asList("d", "a")), ParallelStatementExecutor
+                .getReferencedObjects("alter table d add constraint fk foreign key (id) references a (id) on delete "
+                        + "cascade on update cascade"));
+        Assert.assertEquals(new LinkedHashSet<String>(Arrays.asList("t")), ParallelStatementExecutor
+                .getReferencedObjects("create table t (id int(11), name varchar(50), primary key (id))"));
+        Assert.assertNull(ParallelStatementExecutor.getReferencedObjects("update a, b set a.id = b.id"));
+        Assert.assertNull(ParallelStatementExecutor.getReferencedObjects(
+                "delete from a where id in (select id from b join c on b.x = c.x, d)"));
+    }
+
+    @Test
+    public void testExecuteStatementsInParallel() throws SQLException {
+        List<String> statements = new ArrayList<String>();
+        for (int i = 0; i < 20; i++) {
+            statements.add("drop table t" + i);
+            statements.add("create table t" + i + " (id int)");
+            statements.add("create index t" + i + "_idx on t" + i + " (id)");
+        }
+
+        RecordingConnection connection = new RecordingConnection().failOn("drop");
+        DatabaseScripts.executeStatements(statements, connection.getDataSource(), 4);
+        List<String> executed = connection.getExecuted();
+        Assert.assertEquals(40, executed.size());
+        for (int i = 0; i < 20; i++) {
+            Assert.assertTrue("Index should be created after its table", executed.indexOf("create table t" + i
+                    + " (id int)") < executed.indexOf("create index t" + i + "_idx on t" + i + " (id)"));
+        }
+        Assert.assertEquals(0, connection.getOpenConnections());
+
+        connection = new RecordingConnection().failOn("t7 ");
+        try {
+            DatabaseScripts.executeStatements(statements, connection.getDataSource(), 4);
+            Assert.fail("Failing CREATE TABLE statement should stop the execution");
+        } catch (SQLException e) {
+            Assert.assertFalse("Statements depending on the failing one should not be executed",
+                    connection.getExecuted().contains("create index t7_idx on t7 (id)"));
+        }
+        Assert.assertEquals(0, connection.getOpenConnections());
+    }
+
+    @Test
+    public void testExecuteStatementsInTransactions() throws SQLException {
+        List<String> statements = Arrays.asList("drop table t", "create table t (id int)", "insert into t values (1)",
+                "insert into t values (2)", "insert into t values (3)", "create index t_idx on t (id)",
+                "update t set id = 4");
+
+        RecordingConnection connection = new RecordingConnection().failOn("drop");
+        DatabaseScripts.executeStatementsInTransactions(statements, connection.getConnection(), 2, 0);
+        Assert.assertEquals(Arrays.asList("ROLLBACK", "create table t (id int)", "COMMIT", "insert into t values (1)",
+                "insert into t values (2)", "COMMIT", "insert into t values (3)", "COMMIT",
+                "create index t_idx on t (id)", "COMMIT", "update t set id = 4", "COMMIT"),
+                connection.getTransactionLog());
+        Assert.assertTrue("Auto-commit should be restored", connection.isAutoCommit());
+
+        connection = new RecordingConnection().failOn("values (3)");
+        try {
+            DatabaseScripts.executeStatementsInTransactions(statements, connection.getConnection(), 2, 0);
+            Assert.fail("Failing INSERT statement should stop the execution");
+        } catch (SQLException e) {
+            List<String> log = connection.getTransactionLog();
+            Assert.assertEquals("Only the current chunk should be rolled back",
+                    Arrays.asList("insert into t values (2)", "COMMIT", "ROLLBACK"), log.subList(log.size() - 3,
+                            log.size()));
+        }
+        Assert.assertTrue("Auto-commit should be restored", connection.isAutoCommit());
+
+        connection = new RecordingConnection().failCommits();
+        try {
+            DatabaseScripts.executeStatementsInTransactions(statements.subList(2, 4), connection.getConnection(), 2, 0);
+            Assert.fail("Failing commit should stop the execution");
+        } catch (SQLException e) {
+            Assert.assertEquals("The chunk should be rolled back before auto-commit is restored",
+                    Arrays.asList("insert into t values (1)", "insert into t values (2)", "ROLLBACK"),
+                    connection.getTransactionLog());
+        }
+        Assert.assertTrue("Auto-commit should be restored", connection.isAutoCommit());
+
+        connection = new RecordingConnection().failCommits().failAutoCommit();
+        try {
+            DatabaseScripts.executeStatementsInTransactions(statements.subList(2, 4), connection.getConnection(), 2, 0);
+            Assert.fail("Failing commit should stop the execution");
+        } catch (SQLException e) {
+            Assert.assertEquals("The commit failure should be thrown", "Failing commit", e.getMessage());
+            Assert.assertEquals("The restore failure should be suppressed", "Failing auto-commit",
+                    e.getSuppressed()[0].getMessage());
+        }
+
+        connection = new RecordingConnection();
+        connection.getConnection().setAutoCommit(false);
+        DatabaseScripts.executeStatementsInTransactions(statements, connection.getConnection(), 2, 0);
+        Assert.assertFalse("Manual commit mode should be kept", connection.isAutoCommit());
+    }
+
+    @Test
+    public void testFileAndResourceScripts() throws IOException, SQLException {
+        Path script = folder.getRoot().toPath().resolve("script.sql");
+        Files.write(script, SCRIPT.getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(STATEMENTS, DatabaseScripts.getScriptStatements(script));
+        ClassLoader classLoader = new URLClassLoader(new URL[] { folder.getRoot().toURI().toURL() });
+        Assert.assertEquals(STATEMENTS, DatabaseScripts.getScriptStatements(classLoader, "script.sql"));
+
+        RecordingConnection connection = new RecordingConnection();
+        DatabaseScripts.executeScript(script, connection.getConnection());
+        DatabaseScripts.executeScript(classLoader, "script.sql", connection.getConnection());
+        List<String> executed = new ArrayList<String>(STATEMENTS);
+        executed.addAll(STATEMENTS);
+        Assert.assertEquals(executed, connection.getExecuted());
+
+        // multi-byte characters spanning the decoding buffers
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            content.append("insert into t values (").append(i).append(", '\u00e9\u20ac\ud83d\ude00');\r\n");
+        }
+        Files.write(script, content.toString().getBytes(StandardCharsets.UTF_8));
+        List<String> statements = DatabaseScripts.getScriptStatements(new StringReader(content.toString()));
+        Assert.assertEquals(100000, statements.size());
+        Assert.assertEquals(statements, DatabaseScripts.getScriptStatements(script));
+        Assert.assertEquals(statements, DatabaseScripts.getScriptStatements(classLoader, "script.sql"));
+
+        try {
+            DatabaseScripts.getScriptStatements(classLoader, "missing.sql");
+            Assert.fail("Missing resource should be reported");
+        } catch (FileNotFoundException e) {
+            Assert.assertTrue(e.getMessage().contains("missing.sql"));
+        }
+    }
+
+    @Test
+    public void testInsertStatement() {
+        InsertStatement insert = InsertStatement
+                .parse("INSERT INTO t (a,\n b, c, d) VALUES ('it''s', -1.5e3, null, '')");
+        Assert.assertEquals("insert into t (a, b, c, d) values (?, ?, NULL, ?)", insert.getTemplate());
+        Assert.assertEquals(Arrays.<Object>asList("it's", new BigDecimal("-1.5e3"), ""), insert.getParameters());
+        Assert.assertEquals("t", insert.getTable());
+        Assert.assertEquals("('it''s', -1.5e3, null, '')", insert.getValues());
+
+        Assert.assertEquals("insert into s.t values (?)", InsertStatement.parse("insert into s.t values(1)").getTemplate());
+        Assert.assertNull(InsertStatement.parse("insert into t values (now())"));
+        Assert.assertNull(InsertStatement.parse("insert into t values (1), (2)"));
+        Assert.assertNull(InsertStatement.parse("insert into t values ('a\\b')"));
+        Assert.assertNull(InsertStatement.parse("insert into t select * from u"));
+        Assert.assertNull(InsertStatement.parse("update t set a = 1"));
+    }
+
+    @Test
+    public void testExecuteStatementsWithPreparedInserts() throws SQLException {
+        List<String> statements = Arrays.asList("drop table t", "create table t (id int, name varchar(10))",
+                "insert into t (id, name) values (1, 'a')", "insert into t (id, name) values (2, 'b')",
+                "insert into t (id, name) values (3, 'c')", "insert into t (id, name) values (4, NULL)",
+                "insert into t (id, name) values (5, 'e')", "update t set id = 6");
+
+        RecordingConnection connection = new RecordingConnection().failOn("drop");
+        DatabaseScripts.executeStatementsWithPreparedInserts(statements, connection.getConnection(), 2);
+        Assert.assertEquals(statements.subList(1, statements.size()), connection.getExecuted());
+        Assert.assertEquals(Arrays.asList("insert into t (id, name) values (?, ?)",
+                "insert into t (id, name) values (?, NULL)", "insert into t (id, name) values (?, ?)"),
+                connection.getPrepared());
+        Assert.assertEquals(Arrays.asList(2, 1, 1, 1), connection.getBatchSizes());
+
+        connection = new RecordingConnection().failPreparedOn("'b'");
+        DatabaseScripts.executeStatementsWithPreparedInserts(statements, connection.getConnection(), 10);
+        Assert.assertEquals("Rows failing as prepared statements should be inserted with their literal values",
+                statements, connection.getExecuted());
+        Assert.assertEquals("Failing template should not be prepared again",
+                Arrays.asList("insert into t (id, name) values (?, ?)", "insert into t (id, name) values (?, NULL)"),
+                connection.getPrepared());
+
+        connection = new RecordingConnection().failOn("(3, 'c')");
+        try {
+            DatabaseScripts.executeStatementsWithPreparedInserts(statements, connection.getConnection(), 10);
+            Assert.fail("Failing INSERT statement should stop the execution");
+        } catch (SQLException e) {
+            Assert.assertEquals(statements.subList(0, 4), connection.getExecuted());
+        }
+    }
+
+    @Test
+    public void testExecuteStatementsInPayloads() throws SQLException {
+        List<String> statements = Arrays.asList("drop table a", "create table a (id int)", "drop table b",
+                "create table b (id int)", "insert into a values (1)", "create index a_idx on a (id)",
+                "alter table b add c int", "create trigger t before insert on a for each row begin null; end;");
+
+        RecordingConnection connection = new RecordingConnection().multiStatements(false);
+        DatabaseScripts.executeStatementsInPayloads(statements, connection.getConnection(), 1000, false);
+        Assert.assertEquals(statements, connection.getExecuted());
+        Assert.assertEquals("DROP statements should be executed alone", 7, connection.getRoundTrips());
+
+        connection = new RecordingConnection().multiStatements(false).failOn("drop");
+        DatabaseScripts.executeStatementsInPayloads(statements, connection.getConnection(), 1000, false);
+        Assert.assertEquals("Failing DROP statements should be ignored", Arrays.asList(statements.get(1),
+                statements.get(3), statements.get(4), statements.get(5), statements.get(6), statements.get(7)),
+                connection.getExecuted());
+
+        connection = new RecordingConnection().multiStatements(true).failOn("drop");
+        DatabaseScripts.executeStatementsInPayloads(statements, connection.getConnection(), 1000, true);
+        Assert.assertEquals("Failing DROP statements should be ignored", Arrays.asList(statements.get(1),
+                statements.get(3), statements.get(4), statements.get(5), statements.get(6), statements.get(7)),
+                connection.getExecuted());
+
+        connection = new RecordingConnection().multiStatements(false).failOn("create table b");
+        try {
+            DatabaseScripts.executeStatementsInPayloads(statements, connection.getConnection(), 1000, false);
+            Assert.fail("Failing CREATE TABLE statement should stop the execution");
+        } catch (SQLException e) {
+            Assert.assertEquals(statements.subList(0, 3), connection.getExecuted());
+        }
+
+        connection = new RecordingConnection().multiStatements(false);
+        DatabaseScripts.executeStatementsInPayloads(statements, connection.getConnection(), 40, false);
+        Assert.assertEquals(statements, connection.getExecuted());
+        Assert.assertEquals("Payloads should be limited in size", 8, connection.getRoundTrips());
+
+        statements = Arrays.asList("create table a (id int)", "create table b (id int)", "alter table a add b int",
+                "create table c (id int)", "alter table c add b int", "create table d (id int)");
+        connection = new RecordingConnection().multiStatements(true).failOn("alter");
+        DatabaseScripts.executeStatementsInPayloads(statements, connection.getConnection(), 1000, true);
+        Assert.assertEquals(Arrays.asList(statements.get(0), statements.get(1), statements.get(3), statements.get(5)),
+                connection.getExecuted());
+        Assert.assertEquals("A failing atomic payload should be executed again one statement at a time", 7,
+                connection.getRoundTrips());
+
+        connection = new RecordingConnection().multiStatements(false).failOn("alter");
+        DatabaseScripts.executeStatementsInPayloads(statements, connection.getConnection(), 1000, false);
+        Assert.assertEquals(Arrays.asList(statements.get(0), statements.get(1), statements.get(3), statements.get(5)),
+                connection.getExecuted());
+        Assert.assertEquals("The statements following a failure should be executed one at a time", 5,
+                connection.getRoundTrips());
+    }
+
+    @Test
+    public void testExecutionListener() throws IOException, SQLException {
+        StatementStatistics statistics = new StatementStatistics(2);
+        EventListener listener = new EventListener();
+
+        RecordingConnection connection = new RecordingConnection().failOn("drop");
+        DatabaseScripts.executeScript(new StringReader(SCRIPT), connection.getConnection(), listener);
+        Assert.assertEquals(Arrays.asList("before 0 CREATE_TABLE", "after 0 CREATE_TABLE", "before 1 INSERT",
+                "after 1 INSERT", "before 2 CREATE_OTHER", "after 2 CREATE_OTHER", "before 3 DROP",
+                "failed 3 DROP IGNORED", "before 4 UPDATE", "after 4 UPDATE"), listener.events);
+
+        connection = new RecordingConnection().failOn("alter");
+        DatabaseScripts.executeStatements(Arrays.asList("create table a (id int)", "alter table a add b int",
+                "create unique index a_idx on a (id)", "create index b_idx on a (b)"), connection.getConnection(),
+                statistics);
+        Assert.assertEquals(2, statistics.getCount(StatementKind.CREATE_INDEX));
+        Assert.assertEquals(1, statistics.getCount(StatementKind.ALTER_TABLE));
+        Assert.assertEquals(0, statistics.getCount(StatementKind.INSERT));
+        Assert.assertEquals(2, statistics.getSlowest().size());
+        Assert.assertTrue(statistics.getSlowest().get(0).getElapsedNanos() >= statistics.getSlowest().get(1)
+                .getElapsedNanos());
+        Assert.assertTrue(statistics.getTotalNanos() >= statistics.getTotalNanos(StatementKind.CREATE_INDEX));
+    }
+
+    @Test
+    public void testExecutionListenerKeepsDefaultLogging() throws SQLException {
+        final List<LogRecord> records = new ArrayList<LogRecord>();
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                records.add(record);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        Logger logger = Logger.getLogger(DatabaseScripts.class.getName());
+        logger.addHandler(handler);
+        try {
+            RecordingConnection connection = new RecordingConnection().failOn("alter");
+            DatabaseScripts.executeStatements(Arrays.asList("create table a (id int)", "alter table a add b int"),
+                    connection.getConnection(), new StatementStatistics(1));
+        } finally {
+            logger.removeHandler(handler);
+        }
+        Assert.assertEquals(1, records.size());
+        Assert.assertEquals(Level.WARNING, records.get(0).getLevel());
+    }
+
+    @Test
+    public void testExecutionListenerInBatchesAndTransactions() throws SQLException {
+        List<String> statements = Arrays.asList("drop table t", "create table t (id int)", "insert into t values (1)",
+                "insert into t values (2)", "update t set id = 3");
+
+        EventListener listener = new EventListener();
+        RecordingConnection connection = new RecordingConnection().failOn("drop");
+        DatabaseScripts.executeStatements(statements, connection.getConnection(), 10, listener);
+        Assert.assertEquals(Arrays.asList("before 0 DROP", "failed 0 DROP IGNORED", "before 1 CREATE_TABLE",
+                "after 1 CREATE_TABLE", "before 2 INSERT", "after 2 INSERT", "before 3 INSERT", "after 3 INSERT",
+                "before 4 UPDATE", "after 4 UPDATE"), listener.events);
+
+        listener = new EventListener();
+        connection = new RecordingConnection().failOn("values (2)");
+        try {
+            DatabaseScripts.executeStatements(statements, connection.getConnection(), 10, listener);
+            Assert.fail("Failing INSERT statement should stop the execution");
+        } catch (SQLException e) {
+            Assert.assertEquals(Arrays.asList("before 0 DROP", "after 0 DROP", "before 1 CREATE_TABLE",
+                    "after 1 CREATE_TABLE", "before 2 INSERT", "after 2 INSERT", "before 3 INSERT",
+                    "failed 3 INSERT THROWN"), listener.events);
+        }
+
+        listener = new EventListener();
+        connection = new RecordingConnection().failOn("drop");
+        DatabaseScripts.executeStatementsInTransactions(statements, connection.getConnection(), 2, 0, listener);
+        Assert.assertEquals(Arrays.asList("before 0 DROP", "failed 0 DROP IGNORED", "before 1 CREATE_TABLE",
+                "after 1 CREATE_TABLE", "before 2 INSERT", "after 2 INSERT", "before 3 INSERT", "after 3 INSERT",
+                "before 4 UPDATE", "after 4 UPDATE"), listener.events);
+
+        listener = new EventListener();
+        connection = new RecordingConnection().failOn("update");
+        try {
+            DatabaseScripts.executeStatementsInTransactions(statements, connection.getConnection(), 2, 0, listener);
+            Assert.fail("Failing UPDATE statement should stop the execution");
+        } catch (SQLException e) {
+            Assert.assertEquals(Arrays.asList("before 4 UPDATE", "failed 4 UPDATE THROWN"),
+                    listener.events.subList(listener.events.size() - 2, listener.events.size()));
+        }
+    }
+
+    /**
+     * Listener recording the notifications it receives.
+     */
+    private static class EventListener implements StatementExecutionListener {
+
+        private final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+
+        @Override
+        public void beforeStatement(int index, StatementKind kind, String sql) {
+            events.add("before " + index + " " + kind);
+        }
+
+        @Override
+        public void afterStatement(int index, StatementKind kind, String sql, long elapsedNanos, int updateCount) {
+            events.add("after " + index + " " + kind);
+        }
+
+        @Override
+        public void statementFailed(int index, StatementKind kind, String sql, long elapsedNanos, SQLException error,
+                FailureHandling handling) {
+            events.add("failed " + index + " " + kind + " " + handling);
+        }
+    }
+}
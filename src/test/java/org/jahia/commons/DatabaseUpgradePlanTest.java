@@ -0,0 +1,128 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.commons;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Unit test for the database upgrade plan.
+ */
+public class DatabaseUpgradePlanTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private void createScript(String fileName, String content) throws IOException {
+        Files.write(folder.getRoot().toPath().resolve(fileName), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testDirectoryPlan() throws IOException, SQLException {
+        createScript("schema-7.0.0.0.sql", "create table a (id int);");
+        createScript("schema-7.1.0.0.sql", "create table b (id int);\n-- comment\nalter table b add c int;");
+        createScript("schema-7.10.0.0.sql", "create table c (id int);");
+        createScript("schema-7.2.0.0.sql", "create table d (id int);");
+        createScript("schema-8.0.0.0.sql", "create table e (id int);");
+        createScript("schema-7.2.0.0.txt", "not a script");
+        createScript("readme.sql", "no version");
+        Files.createDirectory(folder.getRoot().toPath().resolve("folder-7.5.sql"));
+
+        DatabaseUpgradePlan plan = DatabaseUpgradePlan.create(folder.getRoot().toPath(), new Version("7.0.0.0"),
+                new Version("7.10"));
+        Assert.assertEquals("Scripts not selected or ordered correctly",
+                "[schema-7.1.0.0.sql, schema-7.2.0.0.sql, schema-7.10.0.0.sql]", plan.getScripts().toString());
+        Assert.assertEquals(new Version("7.2.0.0"), plan.getScripts().get(1).getVersion());
+
+        RecordingConnection connection = new RecordingConnection();
+        plan.execute(connection.getConnection());
+        Assert.assertEquals("Statements not executed in order", Arrays.asList("create table b (id int)",
+                "alter table b add c int", "create table d (id int)", "create table c (id int)"),
+                connection.getExecuted());
+
+        // the statements of the executed scripts are released and parsed again if requested
+        Assert.assertEquals(Arrays.asList("create table d (id int)"), plan.getScripts().get(1).getStatements());
+        Files.delete(folder.getRoot().toPath().resolve("schema-7.2.0.0.sql"));
+        try {
+            plan.getScripts().get(1).getStatements();
+            Assert.fail("Statements of an executed script should not be kept");
+        } catch (IOException e) {
+            // this is the expected case
+        }
+
+        Assert.assertTrue("No script should be planned",
+                DatabaseUpgradePlan.create(folder.getRoot().toPath(), new Version("8.0"), new Version("8.0")).isEmpty());
+    }
+
+    @Test
+    public void testResourcePlan() throws IOException {
+        Path script = folder.getRoot().toPath().resolve("db").resolve("upgrade-1.1.sql");
+        Files.createDirectories(script.getParent());
+        Files.write(script, "update t set a = 'b';".getBytes(StandardCharsets.UTF_8));
+        ClassLoader classLoader = new URLClassLoader(new URL[] { folder.getRoot().toURI().toURL() });
+
+        DatabaseUpgradePlan plan = DatabaseUpgradePlan.create(classLoader,
+                Arrays.asList("db/upgrade-1.1.sql", "db/upgrade-1.0.sql", "db/missing-1.2.sql"), new Version("1.0"),
+                new Version("2.0"));
+        Assert.assertEquals("[upgrade-1.1.sql, missing-1.2.sql]", plan.getScripts().toString());
+        Assert.assertEquals(Arrays.asList("update t set a = 'b'"), plan.getScripts().get(0).getStatements());
+        try {
+            plan.getScripts().get(1).getStatements();
+            Assert.fail("Missing resource should be reported");
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage().contains("db/missing-1.2.sql"));
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.commons;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+
+/**
+ * Unit test for the Maven repository scanner.
+ */
+public class MavenRepositoryScannerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path createArtifact(String groupId, String artifactId, String version, String... fileNames) throws IOException {
+        Path directory = folder.getRoot().toPath().resolve(groupId.replace('.', '/')).resolve(artifactId).resolve(version);
+        Files.createDirectories(directory);
+        for (String fileName : fileNames) {
+            Files.createFile(directory.resolve(fileName));
+        }
+        return directory;
+    }
+
+    @Test
+    public void testScan() throws IOException {
+        createArtifact("org.jahia.modules", "jahia-api", "6.7.0.0", "jahia-api-6.7.0.0.jar", "jahia-api-6.7.0.0.pom",
+                "jahia-api-6.7.0.0-sources.jar", "jahia-api-6.7.0.0.jar.sha1", "_remote.repositories");
+        createArtifact("org.jahia.modules", "jahia-api", "6.6.1.0", "jahia-api-6.6.1.0.pom");
+        createArtifact("org.jahia.modules", "jahia-api", "7.0.0.0-SNAPSHOT", "jahia-api-7.0.0.0-SNAPSHOT.pom");
+        createArtifact("org.jahia.server", "deployers", "4.0-SNAPSHOT", "deployers-4.0-20130129.191029-6.jar",
+                "deployers-4.0-20130129.191029-6.pom", "maven-metadata-remote.xml");
+        createArtifact("org.jahia.server", "deployers", "empty");
+        createArtifact("org.jahia.server", "deployers", "-", "deployers--.pom");
+        createArtifact("org.jahia.server", "deployers", " ", "deployers- .pom");
+
+        Map<String, MavenRepositoryScanner.ArtifactVersions> artifacts = new MavenRepositoryScanner(folder.getRoot().toPath()).scan();
+        Assert.assertEquals("Artifacts not found correctly", "[org.jahia.modules:jahia-api, org.jahia.server:deployers]", artifacts.keySet().toString());
+
+        MavenRepositoryScanner.ArtifactVersions api = artifacts.get("org.jahia.modules:jahia-api");
+        Assert.assertEquals("Group not found correctly", "org.jahia.modules", api.getGroupId());
+        Assert.assertEquals("Artifact not found correctly", "jahia-api", api.getArtifactId());
+        Assert.assertEquals("Versions not found correctly", "[6.6.1.0, 6.7.0.0, 7.0.0.0-SNAPSHOT]", api.getVersions().toString());
+        Assert.assertEquals("Latest release not found correctly", new Version("6.7.0.0"), api.getLatestRelease());
+        Assert.assertEquals("Latest snapshot not found correctly", new Version("7.0.0.0-SNAPSHOT"), api.getLatestSnapshot());
+
+        MavenRepositoryScanner.ArtifactVersions deployers = artifacts.get("org.jahia.server:deployers");
+        Assert.assertEquals("Versions not found correctly", "[4.0-20130129.191029-6]", deployers.getVersions().toString());
+        Assert.assertNull("There should be no release", deployers.getLatestRelease());
+        Assert.assertEquals("Latest snapshot not found correctly", new Version("4.0-20130129.191029-6"), deployers.getLatestSnapshot());
+    }
+
+    @Test
+    public void testRescan() throws IOException {
+        Path version = createArtifact("org.jahia.modules", "jahia-api", "6.7.0.0", "jahia-api-6.7.0.0.pom");
+        MavenRepositoryScanner scanner = new MavenRepositoryScanner(folder.getRoot().toPath());
+        Assert.assertEquals("Versions not found correctly", "[6.7.0.0]",
+                scanner.rescan().get("org.jahia.modules:jahia-api").getVersions().toString());
+
+        createArtifact("org.jahia.modules", "jahia-api", "6.8.0.0", "jahia-api-6.8.0.0.pom");
+        createArtifact("org.jahia.modules", "other", "1.0", "other-1.0.pom");
+        // make sure the change is visible on file systems with a coarse modification time
+        Path artifact = version.getParent();
+        Files.setLastModifiedTime(artifact, FileTime.fromMillis(Files.getLastModifiedTime(artifact).toMillis() + 10000));
+        Path group = artifact.getParent();
+        Files.setLastModifiedTime(group, FileTime.fromMillis(Files.getLastModifiedTime(group).toMillis() + 10000));
+
+        Map<String, MavenRepositoryScanner.ArtifactVersions> artifacts = scanner.rescan();
+        Assert.assertEquals("Versions not found correctly", "[6.7.0.0, 6.8.0.0]",
+                artifacts.get("org.jahia.modules:jahia-api").getVersions().toString());
+        Assert.assertEquals("Versions not found correctly", "[1.0]",
+                artifacts.get("org.jahia.modules:other").getVersions().toString());
+
+        Files.delete(version.resolve("jahia-api-6.7.0.0.pom"));
+        Files.setLastModifiedTime(version, FileTime.fromMillis(Files.getLastModifiedTime(version).toMillis() + 10000));
+        Assert.assertEquals("Versions not found correctly", "[6.8.0.0]",
+                scanner.rescan().get("org.jahia.modules:jahia-api").getVersions().toString());
+    }
+}
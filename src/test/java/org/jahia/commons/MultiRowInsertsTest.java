@@ -0,0 +1,109 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.commons;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit test for the multi-row insert rewriting.
+ */
+public class MultiRowInsertsTest {
+
+    private static final List<String> STATEMENTS = Arrays.asList("drop table t",
+            "insert into t (id, name) values (1, 'a')", "insert into t (id,  name) values (2, 'b')",
+            "insert into t (id, name) values (3, now())", "insert into t (id, name) values (4, 'd')",
+            "insert into t (id, name) values (5, 'e')", "insert into t (id, name) values (6, 'f')",
+            "insert into u values (7)", "insert into u values (8)");
+
+    @Test
+    public void testStandardMerge() throws SQLException {
+        List<String> merged = MultiRowInserts.merge(STATEMENTS, MultiRowInserts.Dialect.STANDARD, 2, 1000);
+        Assert.assertEquals(Arrays.asList("drop table t", "insert into t (id, name) values\n(1, 'a'),\n(2, 'b')",
+                "insert into t (id, name) values (3, now())", "insert into t (id, name) values\n(4, 'd'),\n(5, 'e')",
+                "insert into t (id, name) values (6, 'f')", "insert into u values\n(7),\n(8)"), merged);
+
+        RecordingConnection connection = new RecordingConnection().failOn("drop");
+        DatabaseScripts.executeStatements(merged, connection.getConnection());
+        Assert.assertEquals("Failing DROP statement should still be ignored", merged.subList(1, merged.size()),
+                connection.getExecuted());
+    }
+
+    @Test
+    public void testOracleMerge() {
+        Assert.assertEquals(Arrays.asList("insert all\ninto u values (7)\ninto u values (8)\nselect 1 from dual"),
+                MultiRowInserts.merge(STATEMENTS.subList(7, 9), MultiRowInserts.Dialect.ORACLE, 100, 1000));
+    }
+
+    @Test
+    public void testSizeLimit() {
+        List<String> statements = STATEMENTS.subList(4, 7);
+        Assert.assertEquals("Rows exceeding the size limit should not be merged", statements,
+                MultiRowInserts.merge(statements, MultiRowInserts.Dialect.STANDARD, 100, 40));
+        Assert.assertEquals(2, MultiRowInserts.merge(statements, MultiRowInserts.Dialect.STANDARD, 100, 60).size());
+        Assert.assertEquals(statements, MultiRowInserts.merge(statements, MultiRowInserts.Dialect.STANDARD, 1, 1000));
+    }
+
+    @Test
+    public void testDropLiteralNotMerged() throws SQLException {
+        List<String> statements = Arrays.asList("insert into t (id, name) values (1, 'a')",
+                "insert into t (id, name) values (2, 'free drop shipping')", "insert into t (id, name) values (3, 'c')",
+                "insert into t (id, name) values (4, 'bad')");
+        List<String> merged = MultiRowInserts.merge(statements, MultiRowInserts.Dialect.STANDARD, 100, 1000);
+        Assert.assertEquals(Arrays.asList(statements.get(0), statements.get(1),
+                "insert into t (id, name) values\n(3, 'c'),\n(4, 'bad')"), merged);
+
+        RecordingConnection connection = new RecordingConnection().failOn("bad");
+        try {
+            DatabaseScripts.executeStatements(merged, connection.getConnection());
+            Assert.fail("Failing merged insert should not be ignored");
+        } catch (SQLException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,410 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.commons;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+/**
+ * Test double of a JDBC connection, recording the executed statements. Statements containing the configured failure
+ * marker fail with an {@link SQLException}; a failing batch stops at its first failing statement, like most drivers
+ * do.
+ */
+class RecordingConnection {
+
+    private final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+
+    private final AtomicInteger openConnections = new AtomicInteger();
+
+    private final List<String> transactionLog = Collections.synchronizedList(new ArrayList<String>());
+
+    private boolean autoCommit = true;
+
+    private boolean pendingTransaction;
+
+    private boolean failingCommits;
+
+    private boolean failingAutoCommit;
+
+    private final List<Integer> batchSizes = new ArrayList<Integer>();
+
+    private final List<String> prepared = new ArrayList<String>();
+
+    private int roundTrips;
+
+    private boolean multiStatements;
+
+    private boolean atomicPayloads;
+
+    private String failureMarker;
+
+    private String preparedFailureMarker;
+
+    private boolean plainBatchFailures;
+
+    List<String> getExecuted() {
+        return executed;
+    }
+
+    /**
+     * Returns the number of statements of each executed batch, including the failed ones.
+     */
+    List<Integer> getBatchSizes() {
+        return batchSizes;
+    }
+
+    /**
+     * Returns the executed statements interleaved with the <code>COMMIT</code> and <code>ROLLBACK</code> calls.
+     */
+    List<String> getTransactionLog() {
+        return transactionLog;
+    }
+
+    boolean isAutoCommit() {
+        return autoCommit;
+    }
+
+    /**
+     * Returns the number of connections obtained from the data source and not closed yet.
+     */
+    int getOpenConnections() {
+        return openConnections.get();
+    }
+
+    /**
+     * Returns the SQL of the prepared statements.
+     */
+    List<String> getPrepared() {
+        return prepared;
+    }
+
+    /**
+     * Returns the number of statement executions, a payload or batch counting as one.
+     */
+    int getRoundTrips() {
+        return roundTrips;
+    }
+
+    /**
+     * Accepts several statements separated by <code>;\n</code> in one execution. An atomic payload fails as a whole,
+     * without executing any statement; otherwise the statements are executed one after another and the failure is
+     * reported when the result of the failing statement is read.
+     */
+    RecordingConnection multiStatements(boolean atomic) {
+        this.multiStatements = true;
+        this.atomicPayloads = atomic;
+        return this;
+    }
+
+    /**
+     * Makes the commits fail.
+     */
+    RecordingConnection failCommits() {
+        this.failingCommits = true;
+        return this;
+    }
+
+    /**
+     * Makes switching auto-commit on fail.
+     */
+    RecordingConnection failAutoCommit() {
+        this.failingAutoCommit = true;
+        return this;
+    }
+
+    RecordingConnection failOn(String marker) {
+        this.failureMarker = marker;
+        return this;
+    }
+
+    /**
+     * Makes the rows of prepared statements containing the marker fail, while the same statements executed with their
+     * literal values succeed.
+     */
+    RecordingConnection failPreparedOn(String marker) {
+        this.preparedFailureMarker = marker;
+        return this;
+    }
+
+    /**
+     * Makes a failing batch throw a plain {@link SQLException} instead of a {@link BatchUpdateException}, without
+     * reporting the statements executed before the failure.
+     */
+    RecordingConnection plainBatchFailures() {
+        this.plainBatchFailures = true;
+        return this;
+    }
+
+    private void execute(String sql) throws SQLException {
+        if (failureMarker != null && sql.contains(failureMarker)) {
+            throw new SQLException("Failing statement: " + sql);
+        }
+        executed.add(sql);
+        transactionLog.add(sql);
+        pendingTransaction = !autoCommit;
+    }
+
+    Connection getConnection() {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        String name = method.getName();
+                        if (name.equals("createStatement")) {
+                            return createStatement();
+                        } else if (name.equals("prepareStatement")) {
+                            return prepareStatement((String) args[0]);
+                        } else if (name.equals("getAutoCommit")) {
+                            return autoCommit;
+                        } else if (name.equals("setAutoCommit") && failingAutoCommit && (Boolean) args[0]) {
+                            throw new SQLException("Failing auto-commit");
+                        } else if (name.equals("setAutoCommit")) {
+                            if (!autoCommit && (Boolean) args[0] && pendingTransaction) {
+                                // switching auto-commit on commits the current transaction
+                                transactionLog.add("COMMIT");
+                                pendingTransaction = false;
+                            }
+                            autoCommit = (Boolean) args[0];
+                        } else if (name.equals("commit") && failingCommits) {
+                            throw new SQLException("Failing commit");
+                        } else if (name.equals("commit") || name.equals("rollback")) {
+                            transactionLog.add(name.toUpperCase());
+                            pendingTransaction = false;
+                        }
+                        return defaultValue(method);
+                    }
+                });
+    }
+
+    /**
+     * Returns a data source whose connections all record into this instance.
+     */
+    DataSource getDataSource() {
+        return (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { DataSource.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getName().equals("getConnection")) {
+                            openConnections.incrementAndGet();
+                            final Connection conn = getConnection();
+                            return Proxy.newProxyInstance(getClass().getClassLoader(),
+                                    new Class<?>[] { Connection.class }, new InvocationHandler() {
+                                        @Override
+                                        public Object invoke(Object proxy, Method method, Object[] args)
+                                                throws Throwable {
+                                            if (method.getName().equals("close")) {
+                                                openConnections.decrementAndGet();
+                                                return null;
+                                            }
+                                            return method.invoke(conn, args);
+                                        }
+                                    });
+                        }
+                        return defaultValue(method);
+                    }
+                });
+    }
+
+    private Statement createStatement() {
+        return (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Statement.class },
+                new InvocationHandler() {
+                    private boolean closed;
+                    private final List<String> batch = new ArrayList<String>();
+                    private final List<String> pendingResults = new ArrayList<String>();
+                    private boolean hasResult;
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        String name = method.getName();
+                        if (name.equals("execute")) {
+                            roundTrips++;
+                            String sql = (String) args[0];
+                            pendingResults.clear();
+                            if (multiStatements && sql.contains(";\n")) {
+                                List<String> statements = Arrays.asList(sql.split(";\n"));
+                                if (atomicPayloads) {
+                                    for (String statement : statements) {
+                                        if (failureMarker != null && statement.contains(failureMarker)) {
+                                            throw new SQLException("Failing payload: " + sql);
+                                        }
+                                    }
+                                }
+                                pendingResults.addAll(statements.subList(1, statements.size()));
+                                sql = statements.get(0);
+                            }
+                            execute(sql);
+                            hasResult = true;
+                            return false;
+                        } else if (name.equals("getMoreResults")) {
+                            hasResult = !pendingResults.isEmpty();
+                            if (hasResult) {
+                                execute(pendingResults.remove(0));
+                            }
+                            return false;
+                        } else if (name.equals("getUpdateCount")) {
+                            return hasResult ? 0 : -1;
+                        } else if (name.equals("addBatch")) {
+                            batch.add((String) args[0]);
+                        } else if (name.equals("clearBatch")) {
+                            batch.clear();
+                        } else if (name.equals("executeBatch")) {
+                            roundTrips++;
+                            return executeBatch(batch);
+                        } else if (name.equals("close")) {
+                            closed = true;
+                        } else if (name.equals("isClosed")) {
+                            return closed;
+                        }
+                        return defaultValue(method);
+                    }
+                });
+    }
+
+    /**
+     * Returns a prepared statement whose batched rows are executed as the template with the parameter markers replaced
+     * by the literal values.
+     */
+    private PreparedStatement prepareStatement(final String sql) {
+        prepared.add(sql);
+        return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { PreparedStatement.class }, new InvocationHandler() {
+                    private boolean closed;
+                    private final Map<Integer, String> parameters = new HashMap<Integer, String>();
+                    private final List<String> batch = new ArrayList<String>();
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        String name = method.getName();
+                        if (name.equals("setString")) {
+                            parameters.put((Integer) args[0], "'" + ((String) args[1]).replace("'", "''") + "'");
+                        } else if (name.equals("setBigDecimal")) {
+                            parameters.put((Integer) args[0], args[1].toString());
+                        } else if (name.equals("addBatch")) {
+                            StringBuilder row = new StringBuilder();
+                            int parameter = 0;
+                            for (char c : sql.toCharArray()) {
+                                if (c == '?') {
+                                    row.append(parameters.get(++parameter));
+                                } else {
+                                    row.append(c);
+                                }
+                            }
+                            batch.add(row.toString());
+                            parameters.clear();
+                        } else if (name.equals("clearBatch")) {
+                            batch.clear();
+                        } else if (name.equals("executeBatch")) {
+                            if (preparedFailureMarker != null) {
+                                for (int i = 0; i < batch.size(); i++) {
+                                    if (batch.get(i).contains(preparedFailureMarker)) {
+                                        batchSizes.add(batch.size());
+                                        for (int j = 0; j < i; j++) {
+                                            execute(batch.get(j));
+                                        }
+                                        batch.clear();
+                                        throw new BatchUpdateException("Failing parameter", new int[i]);
+                                    }
+                                }
+                            }
+                            return executeBatch(batch);
+                        } else if (name.equals("close")) {
+                            closed = true;
+                        } else if (name.equals("isClosed")) {
+                            return closed;
+                        }
+                        return defaultValue(method);
+                    }
+                });
+    }
+
+    private int[] executeBatch(List<String> batch) throws SQLException {
+        batchSizes.add(batch.size());
+        int[] updateCounts = new int[batch.size()];
+        try {
+            for (int i = 0; i < updateCounts.length; i++) {
+                try {
+                    execute(batch.get(i));
+                } catch (SQLException e) {
+                    if (plainBatchFailures) {
+                        throw e;
+                    }
+                    int[] executed = new int[i];
+                    System.arraycopy(updateCounts, 0, executed, 0, i);
+                    throw new BatchUpdateException(e.getMessage(), executed, e);
+                }
+                updateCounts[i] = 1;
+            }
+        } finally {
+            batch.clear();
+        }
+        return updateCounts;
+    }
+
+    private static Object defaultValue(Method method) {
+        Class<?> type = method.getReturnType();
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+}
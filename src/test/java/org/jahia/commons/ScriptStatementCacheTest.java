@@ -0,0 +1,106 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.commons;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit test for the on-disk cache of parsed SQL scripts.
+ */
+public class ScriptStatementCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<Path> getEntries(Path directory) throws IOException {
+        List<Path> entries = new ArrayList<Path>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path entry : stream) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    @Test
+    public void testCachedStatements() throws IOException {
+        Path script = folder.getRoot().toPath().resolve("script.sql");
+        Files.write(script, "create table a (id int);\n-- comment\ninsert into a values (1, 'é');\n"
+                .getBytes(StandardCharsets.UTF_8));
+        Path directory = folder.getRoot().toPath().resolve("cache");
+        ScriptStatementCache cache = new ScriptStatementCache(directory);
+        List<String> statements = Arrays.asList("create table a (id int)", "insert into a values (1, 'é')");
+
+        Assert.assertEquals(statements, cache.getScriptStatements(script));
+        List<Path> entries = getEntries(directory);
+        Assert.assertEquals("Statements should be stored once parsed", 1, entries.size());
+        Assert.assertEquals(statements, new ScriptStatementCache(directory).getScriptStatements(script));
+        Assert.assertEquals("The same content should be cached only once", statements,
+                cache.getScriptStatements(new ByteArrayInputStream(Files.readAllBytes(script))));
+        Assert.assertEquals(1, getEntries(directory).size());
+
+        // a corrupted entry is ignored and replaced
+        Files.write(entries.get(0), new byte[] { 1, 2, 3 });
+        Assert.assertEquals(statements, cache.getScriptStatements(script));
+        Assert.assertEquals(statements, new ScriptStatementCache(directory).getScriptStatements(script));
+
+        Files.write(script, "drop table a;".getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals("Modified script should be parsed again", Arrays.asList("drop table a"),
+                cache.getScriptStatements(script));
+        Assert.assertEquals(2, getEntries(directory).size());
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.commons;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Unit test for the binary version codec.
+ */
+public class VersionCodecTest {
+
+    private static final String[] VERSIONS = { "1.0", "1.0.0", "7.2.3.1", "2.0b1", "2.0rc3", "2.0_beta4", "3.0-RC-2",
+            "1.5-SNAPSHOT", "4.0-20130129.191029-6", "1.2.3_UPD-1", "1.0-alpha-1-jahia", "200000.1.70000",
+            "9-été-€", "1.0-a\u0000b", "1.0-😀", "1.0-\ud800x" };
+
+    @Test
+    public void testRoundTrip() {
+        for (String s : VERSIONS) {
+            Version version = new Version(s);
+            byte[] bytes = VersionCodec.encode(version);
+            Assert.assertEquals(s, VersionCodec.encodedSize(version), bytes.length);
+            Version decoded = VersionCodec.decode(bytes);
+            Assert.assertEquals(s, version, decoded);
+            Assert.assertEquals(s, version.toString(), decoded.toString());
+            Assert.assertEquals(s, version.getVersionPartSuffix(), decoded.getVersionPartSuffix());
+            Assert.assertEquals(s, version.getSnapshotTimestamp(), decoded.getSnapshotTimestamp());
+            Assert.assertEquals(s, 0, version.compareTo(decoded));
+        }
+        Assert.assertEquals(6, VersionCodec.encode(new Version("1.0")).length);
+    }
+
+    @Test
+    public void testBuffer() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1024);
+        for (String s : VERSIONS) {
+            VersionCodec.write(new Version(s), buffer);
+        }
+        buffer.flip();
+        for (String s : VERSIONS) {
+            Assert.assertEquals(s, new Version(s).toString(), VersionCodec.read(buffer).toString());
+        }
+        Assert.assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void testInvalidInput() {
+        byte[] bytes = VersionCodec.encode(new Version("1.2.3-foo"));
+        try {
+            VersionCodec.decode(Arrays.copyOf(bytes, bytes.length - 2));
+            Assert.fail("Truncated input should be rejected");
+        } catch (IllegalArgumentException | BufferUnderflowException e) {
+            // expected
+        }
+        try {
+            VersionCodec.decode(Arrays.copyOf(bytes, bytes.length + 1));
+            Assert.fail("Trailing bytes should be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            VersionCodec.decode(new byte[] { (byte) 0x80, 0, 0 });
+            Assert.fail("Unknown flags should be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
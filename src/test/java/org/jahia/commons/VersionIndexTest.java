@@ -0,0 +1,114 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.commons;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Unit test for version index class.
+ */
+public class VersionIndexTest {
+
+    private static VersionIndex createIndex(String... versionStrings) {
+        List<Version> versions = new ArrayList<Version>();
+        for (String versionString : versionStrings) {
+            versions.add(new Version(versionString));
+        }
+        return VersionIndex.of(versions);
+    }
+
+    @Test
+    public void testNavigation() {
+        VersionIndex index = createIndex("2.0", "1.0", "1.5", "3.0b1", "2.5rc1", "1.0.0", "1.5-SNAPSHOT");
+        Assert.assertEquals("Versions are not sorted correctly", "[1.0, 1.5-SNAPSHOT, 1.5, 2.0, 2.5rc1, 3.0b1]", index.toString());
+        Assert.assertEquals("Floor of 1.7 should be 1.5", "1.5", index.floor(new Version("1.7")).toString());
+        Assert.assertEquals("Floor of 1.5 should be 1.5", "1.5", index.floor(new Version("1.5")).toString());
+        Assert.assertNull("Floor of 0.9 should not exist", index.floor(new Version("0.9")));
+        Assert.assertEquals("Lower of 2.0 should be 1.5", "1.5", index.lower(new Version("2.0")).toString());
+        Assert.assertEquals("Ceiling of 1.7 should be 2.0", "2.0", index.ceiling(new Version("1.7")).toString());
+        Assert.assertEquals("Ceiling of 1.5 should be 1.5-SNAPSHOT", "1.5-SNAPSHOT", index.ceiling(new Version("1.5")).toString());
+        Assert.assertEquals("Higher of 1.5 should be 2.0", "2.0", index.higher(new Version("1.5")).toString());
+        Assert.assertNull("Ceiling of 3.0 should not exist", index.ceiling(new Version("3.0")));
+        Assert.assertTrue("Index should contain 1.0.0", index.contains(new Version("1.0.0")));
+        Assert.assertFalse("Index should not contain 1.2", index.contains(new Version("1.2")));
+    }
+
+    @Test
+    public void testLatest() {
+        VersionIndex index = createIndex("2.0", "1.0", "1.5", "3.0b1", "2.5rc1");
+        Assert.assertEquals("Latest version should be 3.0b1", "3.0b1", index.latest().toString());
+        Assert.assertEquals("Latest final version should be 2.0", "2.0", index.latestFinal().toString());
+        Assert.assertEquals("Latest version in range should be 1.5", "1.5", index.latestIn(VersionRange.parse("[1.0,2.0)")).toString());
+        Assert.assertEquals("Latest version in range should be 2.0", "2.0", index.latestIn(VersionRange.parse("[1.0,2.0]")).toString());
+        Assert.assertEquals("Latest version in range should be 2.5rc1", "2.5rc1", index.latestIn(VersionRange.parse("[2.0,2.9]")).toString());
+        Assert.assertEquals("Latest version in range should be 1.5", "1.5", index.latestIn(VersionRange.parse("(,1.5],[1.7,1.9]")).toString());
+        Assert.assertNull("There should be no version in range", index.latestIn(VersionRange.parse("(1.5,2.0)")));
+
+        VersionIndex empty = VersionIndex.of(Collections.<Version>emptyList());
+        Assert.assertTrue("Index should be empty", empty.isEmpty());
+        Assert.assertNull("Empty index should have no latest version", empty.latest());
+        Assert.assertNull("Empty index should have no latest final version", empty.latestFinal());
+        Assert.assertNull("Empty index should have no latest version in range", empty.latestIn(VersionRange.parse("[1.0,)")));
+    }
+
+    @Test
+    public void testCopyOnWrite() {
+        VersionIndex index = createIndex("1.0", "2.0");
+        VersionIndex updated = index.with(new Version("1.5")).with(new Version("3.0rc1"));
+        Assert.assertEquals("Index should not be modified", "[1.0, 2.0]", index.toString());
+        Assert.assertEquals("Versions should be inserted in order", "[1.0, 1.5, 2.0, 3.0rc1]", updated.toString());
+        Assert.assertEquals("Latest final version should be updated", "2.0", updated.latestFinal().toString());
+        Assert.assertSame("Adding an indexed version should return the same index", updated, updated.with(new Version("1.5")));
+        updated = updated.without(new Version("2.0")).without(new Version("1.0"));
+        Assert.assertEquals("Versions should be removed", "[1.5, 3.0rc1]", updated.toString());
+        Assert.assertEquals("Latest final version should be updated", "1.5", updated.latestFinal().toString());
+        Assert.assertSame("Removing a missing version should return the same index", updated, updated.without(new Version("4.0")));
+        Assert.assertTrue("Index should be empty", updated.without(new Version("1.5")).without(new Version("3.0rc1")).isEmpty());
+    }
+}
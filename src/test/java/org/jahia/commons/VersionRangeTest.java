@@ -0,0 +1,134 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.commons;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit test for version range class.
+ */
+public class VersionRangeTest {
+
+    @Test
+    public void testIntervals() {
+        VersionRange range = VersionRange.parse("[1.2,2.0)");
+        assertContains(range, "1.2", "1.2.0", "1.5", "1.9.9", "2.0b1", "2.0rc1");
+        assertNotContains(range, "1.1", "1.2b1", "2.0", "2.0.1");
+
+        range = VersionRange.parse("(1.0, 2.0]");
+        assertContains(range, "1.0.1", "2.0", "2.0.0");
+        assertNotContains(range, "1.0", "2.0.1");
+
+        range = VersionRange.parse("[1.5,)");
+        assertContains(range, "1.5", "8.1.0.0");
+        assertNotContains(range, "1.4");
+
+        range = VersionRange.parse("(,1.0]");
+        assertContains(range, "0.1", "1.0");
+        assertNotContains(range, "1.0.1");
+
+        range = VersionRange.parse("[1.0]");
+        assertContains(range, "1.0", "1.0.0");
+        assertNotContains(range, "1.0.1", "0.9");
+
+        range = VersionRange.parse("(,1.0],[1.2,)");
+        assertContains(range, "0.5", "1.0", "1.2", "3.0");
+        assertNotContains(range, "1.1");
+    }
+
+    @Test
+    public void testWildcards() {
+        VersionRange range = VersionRange.parse("1.x");
+        assertContains(range, "1", "1.0", "1.9.9");
+        assertNotContains(range, "0.9", "2.0", "1.0b1");
+
+        range = VersionRange.parse("1.2.*");
+        assertContains(range, "1.2", "1.2.5");
+        assertNotContains(range, "1.3", "1.1");
+
+        range = VersionRange.parse("*");
+        assertContains(range, "0.1", "1000");
+
+        range = VersionRange.parse("1.5");
+        assertContains(range, "1.5", "2.0");
+        assertNotContains(range, "1.4");
+    }
+
+    @Test
+    public void testFilter() {
+        List<Version> versions = Arrays.asList(new Version("1.0"), new Version("1.5"), new Version("2.0"),
+                new Version("1.2"));
+        Assert.assertEquals("Versions not filtered correctly", "[1.5, 1.2]",
+                VersionRange.parse("[1.2,2.0)").filter(versions).toString());
+    }
+
+    @Test
+    public void testInvalidRanges() {
+        for (String range : new String[] { null, "", "[1.0", "[2.0,1.0]", "(1.0)", "[1.0,2.0,3.0]", "[1.0,2.0) x",
+                "1.x.5", "[1.0,2.0],", "[,1.0", "1.0b1.x", "foo", "[foo,2.0)", "(1.0,bar]", "[r06]", "-1.0", "a.x" }) {
+            try {
+                VersionRange.parse(range);
+                Assert.fail("Range " + range + " should be invalid");
+            } catch (IllegalArgumentException e) {
+                // this is the expected case
+            }
+        }
+    }
+
+    private static void assertContains(VersionRange range, String... versions) {
+        for (String version : versions) {
+            Assert.assertTrue("Range " + range + " should contain " + version, range.contains(new Version(version)));
+        }
+    }
+
+    private static void assertNotContains(VersionRange range, String... versions) {
+        for (String version : versions) {
+            Assert.assertFalse("Range " + range + " should not contain " + version, range.contains(new Version(version)));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * ==========================================================================================
+ * =                   JAHIA'S DUAL LICENSING - IMPORTANT INFORMATION                       =
+ * ==========================================================================================
+ *
+ *                                 http://www.jahia.com
+ *
+ *     Copyright (C) 2002-2019 Jahia Solutions Group SA. All rights reserved.
+ *
+ *     THIS FILE IS AVAILABLE UNDER TWO DIFFERENT LICENSES:
+ *     1/GPL OR 2/JSEL
+ *
+ *     1/ GPL
+ *     ==================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE GPL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ *
+ *     2/ JSEL - Commercial and Supported Versions of the program
+ *     ===================================================================================
+ *
+ *     IF YOU DECIDE TO CHOOSE THE JSEL LICENSE, YOU MUST COMPLY WITH THE FOLLOWING TERMS:
+ *
+ *     Alternatively, commercial and supported versions of the program - also known as
+ *     Enterprise Distributions - must be used in accordance with the terms and conditions
+ *     contained in a separate written agreement between you and Jahia Solutions Group SA.
+ *
+ *     If you are unsure which license is appropriate for your use,
+ *     please contact the sales department at sales@jahia.com.
+ */
+package org.jahia.commons;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit test for version registry class.
+ */
+public class VersionRegistryTest {
+
+    @Test
+    public void testAddRemove() {
+        VersionRegistry registry = new VersionRegistry();
+        Assert.assertNull("Unknown artifact should have no latest version", registry.getLatest("module"));
+        Assert.assertTrue(registry.add("module", new Version("1.0")));
+        Assert.assertTrue(registry.add("module", new Version("2.0rc1")));
+        Assert.assertTrue(registry.add("module", new Version("1.5")));
+        Assert.assertFalse("Equal version should not be added twice", registry.add("module", new Version("1.5")));
+        Assert.assertTrue(registry.add("other", new Version("3.0")));
+
+        VersionIndex snapshot = registry.getVersions("module");
+        Assert.assertEquals("2.0rc1", registry.getLatest("module").toString());
+        Assert.assertEquals("1.5", registry.getLatestFinal("module").toString());
+        Assert.assertEquals("1.0", registry.getLatestIn("module", VersionRange.parse("[1.0,1.5)")).toString());
+
+        Assert.assertTrue(registry.remove("module", new Version("2.0rc1")));
+        Assert.assertFalse("Missing version should not be removed", registry.remove("module", new Version("4.0")));
+        Assert.assertEquals("1.5", registry.getLatest("module").toString());
+        Assert.assertEquals("Snapshot should not be affected by changes", 3, snapshot.size());
+
+        Assert.assertTrue(registry.remove("module", new Version("1.0")));
+        Assert.assertTrue(registry.remove("module", new Version("1.5")));
+        Assert.assertEquals("Artifact without versions should be removed", "[other]", registry.getNames().toString());
+        Assert.assertEquals("[3.0]", registry.removeAll("other").toString());
+        Assert.assertTrue(registry.getNames().isEmpty());
+    }
+
+    @Test
+    public void testConcurrentUpdates() throws Exception {
+        final VersionRegistry registry = new VersionRegistry();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int thread = 0; thread < 4; thread++) {
+                final int major = thread;
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int i = 0; i < 500; i++) {
+                            registry.add("module", new Version(major + "." + i));
+                            registry.add("module", new Version(major + "." + i + "-SNAPSHOT"));
+                            registry.remove("module", new Version(major + "." + i + "-SNAPSHOT"));
+                            Assert.assertNotNull(registry.getLatest("module"));
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        Assert.assertEquals("No update should be lost", 2000, registry.getVersions("module").size());
+        Assert.assertEquals("3.499", registry.getLatest("module").toString());
+    }
+}
@@ -46,8 +46,16 @@ package org.jahia.commons;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.BiConsumer;
 
 /**
  * Unit test for version parsing class.
@@ -170,6 +178,117 @@ public class VersionTest {
 
     }
 
+    @Test
+    public void testVersionNormalization() {
+        Version version = new Version("1.5");
+        Version normalizedVersion = new Version("1.5.0.0");
+        Assert.assertEquals("Equal versions should have the same hash code", version.hashCode(), normalizedVersion.hashCode());
+        Set<Version> versions = new HashSet<Version>();
+        versions.add(version);
+        Assert.assertTrue("Version " + normalizedVersion + " should be found in a set containing " + version, versions.contains(normalizedVersion));
+        Assert.assertFalse("Version 1.5-SNAPSHOT should not be equal to " + version, new Version("1.5-SNAPSHOT").equals(version));
+        Assert.assertFalse("Version 1.5_24 should not be equal to " + version, new Version("1.5_24").equals(version));
+
+        Assert.assertEquals("Beta version should be lower than final version", -1, new Version("1.5.0b1").compareTo(version));
+        Assert.assertEquals("Final version should be higher than release candidate", 1, version.compareTo(new Version("1.5.0.0rc2")));
+        Assert.assertEquals("Trailing zeros should not be considered", 0, version.compareTo(new Version("1.5.0-SNAPSHOT")));
+        Assert.assertEquals("Beta versions should be compared by beta number", -1, new Version("2.0b1").compareTo(new Version("2.0.0b2")));
+        Assert.assertEquals("Same beta versions should be equal", 0, new Version("2.0b1-a").compareTo(new Version("2.0b1-b")));
+
+        List<Version> sorted = new ArrayList<Version>();
+        for (String v : new String[] { "2.0", "1.0.1", "2.0rc1", "1.0", "2.0b2", "1.10", "2.0b1", "1.9.9" }) {
+            sorted.add(new Version(v));
+        }
+        Collections.sort(sorted);
+        Assert.assertEquals("Versions are not sorted correctly", "[1.0, 1.0.1, 1.9.9, 1.10, 2.0b1, 2.0b2, 2.0rc1, 2.0]", sorted.toString());
+    }
+
+    @Test
+    public void testSnapshotTimestamps() {
+        Version version = new Version("4.0-20130129.191029-6");
+        Assert.assertTrue("Version " + version + " should be identified as timestamped snapshot", version.isTimestampedSnapshot());
+        Assert.assertEquals("Snapshot timestamp not parsed correctly", 1359486629L, version.getSnapshotTimestamp());
+        Assert.assertEquals("Snapshot build number not parsed correctly", 6, version.getSnapshotBuildNumber());
+        Assert.assertFalse("Version 4.0-SNAPSHOT should not be identified as timestamped snapshot", new Version("4.0-SNAPSHOT").isTimestampedSnapshot());
+        Assert.assertFalse("Invalid date should not be identified as timestamp", new Version("4.0-20130230.191029-6").isTimestampedSnapshot());
+        Assert.assertEquals("Invalid date should have no timestamp", -1, new Version("4.0-20130129.241029-6").getSnapshotTimestamp());
+
+        List<Version> sorted = new ArrayList<Version>();
+        for (String v : new String[] { "4.0-SNAPSHOT", "4.0-20130129.191029-10", "4.0-20130130.080000-11", "3.9",
+                "4.0-20130129.191029-6", "4.0.1-20120101.000000-1" }) {
+            sorted.add(new Version(v));
+        }
+        Collections.sort(sorted);
+        Assert.assertEquals("Snapshots are not sorted correctly", "[3.9, 4.0-20130129.191029-6, 4.0-20130129.191029-10, "
+                + "4.0-20130130.080000-11, 4.0-SNAPSHOT, 4.0.1-20120101.000000-1]", sorted.toString());
+        Assert.assertEquals("Timestamped snapshot should be lower than the release", -1, version.compareTo(new Version("4.0")));
+        Assert.assertEquals("Timestamped snapshot should not have a long sort key", -1, version.toLongSortKey());
+    }
+
+    @Test
+    public void testSortKey() {
+        String[] versionStrings = { "0.9", "1.0b1", "1.0.0b2", "1.0rc1", "1.0", "1.0.0-SNAPSHOT", "1.0_24", "1.0.0.1",
+                "1.2.3.b2b", "1.10", "2.0", "20070801", "r06", "1.6.0_u24-b07-334-10M3326", "2.0-20130129.191029-6",
+                "2.0-20130129.191029-10", "2.0-20130130.080000-1" };
+        List<Version> versions = new ArrayList<Version>();
+        for (String versionString : versionStrings) {
+            versions.add(new Version(versionString));
+        }
+        for (Version left : versions) {
+            Version decoded = Version.fromSortKey(left.toSortKey());
+            Assert.assertEquals("Version " + left + " not restored from its sort key", left, decoded);
+            Assert.assertEquals("Version " + left + " not restored from its sort key", left.toString(), decoded.toString());
+            for (Version right : versions) {
+                int expected = Integer.signum(left.compareTo(right));
+                int actual = Integer.signum(Arrays.compareUnsigned(left.toSortKey(), right.toSortKey()));
+                if (expected != 0) {
+                    Assert.assertEquals("Sort keys of " + left + " and " + right + " are not ordered as versions", expected, actual);
+                }
+                long leftKey = left.toLongSortKey();
+                long rightKey = right.toLongSortKey();
+                if (leftKey != -1 && rightKey != -1) {
+                    Assert.assertEquals("Long sort keys of " + left + " and " + right + " are not ordered as versions", expected, Long.signum(leftKey - rightKey));
+                }
+            }
+        }
+        Assert.assertEquals("Version 20070801 should not have a long sort key", -1, new Version("20070801").toLongSortKey());
+        Assert.assertEquals("Version 1.0 and 1.0.0 should have the same long sort key", new Version("1.0").toLongSortKey(), new Version("1.0.0").toLongSortKey());
+        try {
+            Version.fromSortKey(new byte[] { 2, 1 });
+            Assert.fail("Truncated sort key should not be decoded");
+        } catch (IllegalArgumentException e) {
+            // this is the expected case
+        }
+    }
+
+    @Test
+    public void testSliceParsing() {
+        byte[] manifest = "Bundle-Version: 1.6.0_24-b07-334-10M3326\r\n".getBytes(StandardCharsets.US_ASCII);
+        Version version = new Version(manifest, 16, 24);
+        Assert.assertEquals("Version " + version + " not parsed correctly from bytes", new Version("1.6.0_24-b07-334-10M3326"), version);
+        Assert.assertEquals("Version " + version + " toString not equal", "1.6.0_24-b07-334-10M3326", version.toString());
+
+        StringBuilder versionBuffer = new StringBuilder("6.5b1-B1");
+        Assert.assertEquals("Version not parsed correctly from a CharSequence", "6.5b1-B1", new Version(versionBuffer).toString());
+        Assert.assertEquals("Version not parsed correctly from a CharBuffer", new Version("8.1.0.0"), new Version(CharBuffer.wrap("8.1.0.0")));
+
+        String path = "/org/jahia/modules/jahia-api/6.7.0.0-SNAPSHOT/jahia-api-6.7.0.0-SNAPSHOT.jar";
+        int start = path.lastIndexOf('/') + 1;
+        version = Version.fromMavenFileName(path, start, path.length() - ".jar".length());
+        Assert.assertEquals("Version " + version + " does not match", new Version("6.7.0.0-SNAPSHOT"), version);
+        byte[] pathBytes = path.getBytes(StandardCharsets.US_ASCII);
+        version = Version.fromMavenFileName(pathBytes, start, path.length() - ".jar".length() - start);
+        Assert.assertEquals("Version " + version + " does not match", new Version("6.7.0.0-SNAPSHOT"), version);
+        Assert.assertNull("File name without version should not be parsed", Version.fromMavenFileName(pathBytes, start, 9));
+
+        try {
+            new Version(manifest, 16, 0);
+            Assert.fail("Empty slice should generate a NumberFormatException");
+        } catch (NumberFormatException nfe) {
+            // this is the expected case
+        }
+    }
+
     @Test
     public void testFileNameParsing() {
         Version version = Version.fromMavenFileName("geronimo-j2ee-connector_1.5_spec-2.0.0");
@@ -210,4 +329,68 @@ public class VersionTest {
         Assert.assertEquals("Version " + version + " does not match", new Version("1.0.101.R35x_v20091214"), version);
         */
     }
+
+    @Test
+    public void testSharedInstances() {
+        VersionCache.clear();
+        Version version = Version.of("8.1.0.0");
+        Assert.assertSame("Version.of should return the cached instance", version, Version.of("8.1.0.0"));
+        Assert.assertEquals("Cached version should be equal to a parsed one", new Version("8.1.0.0"), version);
+        Assert.assertEquals("Cache hits are not counted", 1, VersionCache.getHitCount());
+        Assert.assertEquals("Cache misses are not counted", 1, VersionCache.getMissCount());
+        for (int i = 0; i < VersionCache.getMaxSize() * 4; i++) {
+            Assert.assertEquals("Version " + i + ".0 not parsed correctly", i, Version.of(i + ".0").getMajorVersion());
+        }
+
+        version = Version.of("1.6.0_24-b07-334-10M3326");
+        try {
+            version.getQualifiers().add("modified");
+            Assert.fail("Qualifiers of a shared version should not be modifiable");
+        } catch (UnsupportedOperationException e) {
+            // this is the expected case
+        }
+        try {
+            version.getOrderedVersionNumbers().set(0, 2);
+            Assert.fail("Version numbers of a shared version should not be modifiable");
+        } catch (UnsupportedOperationException e) {
+            // this is the expected case
+        }
+        Assert.assertEquals("Version " + version + " toString not equal", "1.6.0_24-b07-334-10M3326", version.toString());
+
+        try {
+            Version.of(null);
+            Assert.fail("Null version should generate a NumberFormatException");
+        } catch (NumberFormatException nfe) {
+            // this is the expected case
+        }
+    }
+
+    @Test
+    public void testBulkParsing() {
+        final List<String> invalid = new ArrayList<String>();
+        BiConsumer<String, NumberFormatException> errorHandler = new BiConsumer<String, NumberFormatException>() {
+            @Override
+            public void accept(String versionString, NumberFormatException e) {
+                invalid.add(versionString);
+            }
+        };
+        List<Version> versions = Version.parseAll(Arrays.asList("1.0", "", "2.0b1", "-", "1.5"), errorHandler);
+        Assert.assertEquals("Valid strings should be parsed in order", "[1.0, 2.0b1, 1.5]", versions.toString());
+        Assert.assertEquals("Invalid strings should be reported in order", Arrays.asList("", "-"), invalid);
+
+        invalid.clear();
+        Random random = new Random(42);
+        List<String> strings = new ArrayList<String>();
+        for (int i = 0; i < 20000; i++) {
+            strings.add(i % 1000 == 0 ? "" : random.nextInt(5) + "." + random.nextInt(5000)
+                    + (random.nextBoolean() ? "" : random.nextBoolean() ? "rc" + random.nextInt(3) : "-SNAPSHOT"));
+        }
+        strings.add("99999." + Integer.MAX_VALUE);
+        List<Version> sorted = Version.sortVersions(strings, errorHandler);
+        Assert.assertEquals("Invalid strings should be reported", 20, invalid.size());
+        List<Version> expected = new ArrayList<Version>(Version.parseAll(strings.stream(), null));
+        Collections.sort(expected);
+        Assert.assertEquals("Sorted versions should be ordered as by compareTo", expected, sorted);
+        Assert.assertEquals("99999." + Integer.MAX_VALUE, sorted.get(sorted.size() - 1).toString());
+    }
 }